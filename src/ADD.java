@@ -0,0 +1,307 @@
+/* =========================================================================== *
+ * File : ADD.java                                                             *
+ * =========================================================================== *
+ * Class that represents numeric functions of Boolean variables as Algebraic   *
+ * (Multi-Terminal) Decision Diagrams. The tables are kept in an               *
+ * ROBDDHeapStore as in ROBDD. A leaf has var n+1 like the terminals of ROBDD, *
+ * its low field holds an index into the primitive side table values and its   *
+ * high field is -1. Nodes 0 and 1 are the leaves 0.0 and 1.0.                 *
+ * Prime Methods : constant(value), variable(i)                                *
+ *               : apply(op,f,g) for PLUS, TIMES, MIN, MAX                     *
+ *               : threshold(f,t,ROBDD), sumAbstract(f,var), maxAbstract(f,var)*
+ *               : print()                                                     *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ADD{
+
+    // Operations for apply
+    public static final int PLUS = 0;
+    public static final int TIMES = 1;
+    public static final int MIN = 2;
+    public static final int MAX = 3;
+    // Abstractions, stored as aux in the computed tables
+    private static final int SUM_ABSTRACT = 4;
+    private static final int MAX_ABSTRACT = 5;
+    // Computed tables of the store : apply keyed by both operands, the
+    // abstractions keyed by function and variable
+    private static final int APPLY_CACHE = 0;
+    private static final int ABSTRACT_CACHE = 1;
+
+    // Tables T, H and G
+    private ROBDDHeapStore store;
+    private int vars;
+    // Leaf values. values[low(u)] is the value of leaf u
+    private double[] values;
+    private int leafCount;
+    // Leaves by value. Open addressing on the bits of the value, the size
+    // is a power of 2, -1 marks an empty slot
+    private int[] leafTable;
+
+    // Constructor. Equivalent to the init(T),init(H) method in Notes
+    // Here n is the number of variables.
+    public ADD(int n){
+        this(n,ROBDDConfig.DEFAULT);
+    }
+
+    // Constructor. Sizes and grows the tables as given by config
+    public ADD(int n,ROBDDConfig config){
+        store = new ROBDDHeapStore(config);
+        vars = n;
+        values = new double[16];
+        leafCount = 0;
+        leafTable = new int[32];
+        Arrays.fill(leafTable,-1);
+
+        // Adding the leaves 0.0 and 1.0 as nodes 0 and 1
+        constant(0.0);
+        constant(1.0);
+    }
+
+    // Getter-Setter Methods
+    // getNodeCount : Returns the number of nodes in ADD, leaves included
+    public int getNodeCount(){
+        return store.getNodeCount();
+    }
+
+    // getADDTable : Returns the ADD table of the ADD.
+    public int[][] getADDTable(){
+        return store.getTable();
+    }
+
+    // Public Interface
+    // mk(i,l,h) : Returns the node which is being made.
+    public int mk(int i,int l,int h){
+        // Return in case the node is redundant
+        if(l == h){
+            return l;
+        }
+        int node = store.lookup(i,l,h);
+        if(node == -1){
+            node = store.add(i,l,h);
+            store.insert(node);
+        }
+        return node;
+    }
+
+    // constant(value) : Returns the leaf with the given value
+    public int constant(double value){
+        if(value == 0.0) value = 0.0;           // -0.0 and 0.0 share a leaf
+        int node = lookupLeaf(value);
+        if(node == -1){
+            if(leafCount == values.length)
+                values = Arrays.copyOf(values,2*leafCount);
+            values[leafCount] = value;
+            node = store.add(vars+1,leafCount++,-1);
+            // The terminals 0 and 1 stay out of H like in ROBDD
+            if(node > 1) store.insert(node);
+            insertLeaf(node);
+        }
+        return node;
+    }
+
+    // variable(i) : Returns the function that is 1.0 if i is 1, else 0.0
+    public int variable(int i){
+        return mk(i,0,1);
+    }
+
+    // isLeaf(u) : Returns whether u is a leaf
+    public boolean isLeaf(int u){
+        return store.getVar(u) == vars+1;
+    }
+
+    // value(u) : Returns the value of leaf u
+    public double value(int u){
+        return values[store.getLow(u)];
+    }
+
+    // eval(u,assignment) : Returns the value of u. assignment[i-1] holds the
+    // value of variable i
+    public double eval(int u,int[] assignment){
+        while(!isLeaf(u)){
+            if(assignment[store.getVar(u)-1] == 0) u = store.getLow(u);
+            else u = store.getHigh(u);
+        }
+        return value(u);
+    }
+
+    // apply(op,f,g) : Returns the function op(f,g), op being PLUS, TIMES,
+    // MIN or MAX
+    public int apply(int op,int f,int g){
+        // All operations are commutative, the cache is keyed on f <= g
+        if(f > g){
+            int temp = f;
+            f = g;
+            g = temp;
+        }
+        if(isLeaf(f) && isLeaf(g)) return constant(compute(op,value(f),value(g)));
+        if(op == PLUS && f == 0) return g;
+        if(op == TIMES && (f == 0 || g == 0)) return 0;
+        if(op == TIMES && f == 1) return g;
+        if((op == MIN || op == MAX) && f == g) return f;
+        int cached = store.getCached(APPLY_CACHE,key(f,g),op);
+        if(cached != -1) return cached;
+        int u;
+        if(store.getVar(f) == store.getVar(g)){
+            u = mk(store.getVar(f),apply(op,store.getLow(f),store.getLow(g)),
+                                   apply(op,store.getHigh(f),store.getHigh(g)));
+        }else if(store.getVar(f) < store.getVar(g)){
+            u = mk(store.getVar(f),apply(op,store.getLow(f),g),
+                                   apply(op,store.getHigh(f),g));
+        }else{
+            u = mk(store.getVar(g),apply(op,f,store.getLow(g)),
+                                   apply(op,f,store.getHigh(g)));
+        }
+        store.putCached(APPLY_CACHE,key(f,g),op,u);
+        return u;
+    }
+
+    // threshold(f,t,u) : Builds in the ROBDD u the function that is 1 where
+    // f is at least t, and returns its root
+    public int threshold(int f,double t,ROBDD u){
+        int[] done = new int[store.getNodeCount()];
+        Arrays.fill(done,-1);
+        return threshold(f,t,u,done);
+    }
+
+    // sumAbstract(f,var) : Returns f(var=0) + f(var=1)
+    public int sumAbstract(int f,int var){
+        return abstractVar(SUM_ABSTRACT,PLUS,f,var);
+    }
+
+    // maxAbstract(f,var) : Returns max(f(var=0),f(var=1))
+    public int maxAbstract(int f,int var){
+        return abstractVar(MAX_ABSTRACT,MAX,f,var);
+    }
+
+    // print : Prints the table T, the leaf values and H. Useful for debugging
+    public void print(){
+        System.out.println("Current State of T Table");
+        for(int i=0;i<store.getNodeCount();i++){
+            if(isLeaf(i)) System.out.println(i + " leaf " + value(i));
+            else System.out.println(i + " " + store.getVar(i)
+                                      + " " + store.getLow(i)
+                                      + " " + store.getHigh(i));
+        }
+        System.out.println("Current State of H Table");
+        for(int i=0;i<store.getUniqueTableSize();i++){
+            int node = store.getUnique(i);
+            if(node != -1) System.out.println(i + " " + node);
+        }
+    }
+
+    // Private Implementation
+    private double compute(int op,double a,double b){
+        switch(op){
+            case PLUS : return a + b;
+            case TIMES : return a * b;
+            case MIN : return Math.min(a,b);
+            default : return Math.max(a,b);
+        }
+    }
+
+    private int threshold(int f,double t,ROBDD u,int[] done){
+        if(isLeaf(f)) return value(f) >= t ? 1 : 0;
+        if(done[f] != -1) return done[f];
+        int l = threshold(store.getLow(f),t,u,done);
+        int h = threshold(store.getHigh(f),t,u,done);
+        int node = u.mk(store.getVar(f),l,h);
+        done[f] = node;
+        return node;
+    }
+
+    private int abstractVar(int cache,int op,int f,int var){
+        if(store.getVar(f) > var) return op == PLUS ? apply(PLUS,f,f) : f;
+        if(store.getVar(f) == var) return apply(op,store.getLow(f),store.getHigh(f));
+        int cached = store.getCached(ABSTRACT_CACHE,key(f,var),cache);
+        if(cached != -1) return cached;
+        int u = mk(store.getVar(f),abstractVar(cache,op,store.getLow(f),var),
+                                   abstractVar(cache,op,store.getHigh(f),var));
+        store.putCached(ABSTRACT_CACHE,key(f,var),cache,u);
+        return u;
+    }
+
+    // Key of an operation on a and b in the computed tables
+    private long key(int a,int b){
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    /* Supporting Operations on the leaves */
+    // lookupLeaf(value) : Returns the leaf with the given value, -1 if absent
+    private int lookupLeaf(double value){
+        long bits = Double.doubleToLongBits(value);
+        int mask = leafTable.length - 1;
+        for(int slot=leafHash(bits) & mask;leafTable[slot]!=-1;slot=(slot+1) & mask){
+            int node = leafTable[slot];
+            if(Double.doubleToLongBits(value(node)) == bits) return node;
+        }
+        return -1;
+    }
+
+    // insertLeaf(node) : Inserts leaf node in the leaf table, doubling the
+    // table to keep it half empty
+    private void insertLeaf(int node){
+        if(2*leafCount > leafTable.length){
+            int[] old = leafTable;
+            leafTable = new int[2*old.length];
+            Arrays.fill(leafTable,-1);
+            for(int k=0;k<old.length;k++) if(old[k] != -1) placeLeaf(old[k]);
+        }
+        placeLeaf(node);
+    }
+
+    private void placeLeaf(int node){
+        int mask = leafTable.length - 1;
+        int slot = leafHash(Double.doubleToLongBits(value(node))) & mask;
+        while(leafTable[slot] != -1) slot = (slot+1) & mask;
+        leafTable[slot] = node;
+    }
+
+    // HashCode of a leaf, computed from the bits of its value
+    private int leafHash(long bits){
+        return ROBDDNodeStore.nodeHash(vars+1,(int) bits,(int) (bits >>> 32));
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ADD implementation");
+        ADD test = new ADD(3);
+        // price = 10 + 5*x1 + 3*x2*x3
+        int price = test.apply(ADD.PLUS,test.constant(10),
+                    test.apply(ADD.TIMES,test.constant(5),test.variable(1)));
+        int bundle = test.apply(ADD.TIMES,test.variable(2),test.variable(3));
+        price = test.apply(ADD.PLUS,price,
+                           test.apply(ADD.TIMES,test.constant(3),bundle));
+        int[] assignment = {1,1,1};
+        System.out.println("price(1,1,1) : " + test.eval(price,assignment));
+        int sum = test.sumAbstract(test.sumAbstract(
+                  test.sumAbstract(price,1),2),3);
+        System.out.println("Sum over all assignments : " + test.value(sum));
+        int max = test.maxAbstract(test.maxAbstract(
+                  test.maxAbstract(price,1),2),3);
+        System.out.println("Max over all assignments : " + test.value(max));
+        int cheap = test.apply(ADD.MIN,price,test.constant(12));
+        System.out.println("min(price,12) at (1,1,1) : "
+                           + test.eval(cheap,assignment));
+        test.print();
+
+        ROBDD expensive = new ROBDD(3);
+        int root = test.threshold(price,14,expensive);
+        System.out.println("ROBDD of price >= 14, root " + root);
+        expensive.print();
+
+        // Same price with a hard limit of 6 nodes
+        ROBDDConfig config = new ROBDDConfig.Builder().maxNodes(6).build();
+        ADD small = new ADD(3,config);
+        try{
+            small.apply(ADD.PLUS,small.constant(10),
+                        small.apply(ADD.TIMES,small.constant(5),small.variable(1)));
+        }catch(ROBDDNodeLimitException e){
+            System.out.println(e.getMessage() + ", nodes : " + small.getNodeCount());
+        }
+    }
+}
@@ -4,56 +4,134 @@
  * Class ROBDD to build an ROBDD DataStructure from a Boolean expression given *
  * as a string. Note that in the Boolean Expression, NOT is expressed as NOT(*)*
  * and not as !. Apart from that, all other expressions are expressed normally.*
- * Prime Methods : build(booleanExp,rootVar)                                   *     
+ * Prime Methods : build(booleanExp,rootVar), build(ROBDDExpression)           *     
+ *               : apply(op,u1,u2)                                             *
+ *               : exists(u,cube), andExists(f,g,cube), replace(u,map)         *
+ *               : restrict(u,var,val), restrict(u,vars,vals)                  *
+ *               : support(root), nodeCount(roots), levelProfile(roots)        *
+ *               : equals(f,g), implies(f,g), disjoint(f,g)                    *
+ *               : save(file), load(file,variables,config)                     *
  *               : print()                                                     *
- * Limitations   : Hashing strategy inefficient (memorywise) for H             *              
  * =========================================================================== */    
 
 import java.util.*;
 import java.lang.*;
+import java.io.*;
 import com.udojava.evalex.*; //Boolean expression evaluator
 
 public class ROBDD{
 
-    private int[][] T;
-    private int[] H;
-    private int nodeCount;   
-    private int capacity;
+    // Operators for apply, given as truth tables : bit (2*a + b) of the
+    // operator holds the value of a op b
+    public static final int AND = 8;
+    public static final int OR = 14;
+    public static final int XOR = 6;
+    public static final int IMP = 11;
+    public static final int BIIMP = 9;
+    
+    // Snapshot files start with SNAPSHOT_MAGIC and SNAPSHOT_VERSION. Files of
+    // another version are not loaded.
+    private static final int SNAPSHOT_MAGIC = 0x524F4244;
+    public static final int SNAPSHOT_VERSION = 2;
+
+    // Computed tables of the store : apply keyed by (u1,u2) with op as aux,
+    // andExists keyed by (f,g) with the cube as aux, restrict keyed by
+    // (node,var,val). Each node takes 32 bits of the key, so no two keys
+    // overlap
+    private static final int APPLY_CACHE = 0;
+    private static final int AND_EXISTS_CACHE = 1;
+    private static final int RESTRICT_CACHE = 2;
+
+    // Tables T, H and G
+    private ROBDDNodeStore store;
     private int vars;
+    // Names of the variables 1..vars
+    private ROBDDVariables variables;
+    // Counters of the restrict cache
+    private long restrictHits;
+    private long restrictMisses;
+    // Token of the running build, null if it cannot be cancelled
+    private ROBDDCancelToken cancelToken;
+    // Traversals : node u is visited in the current traversal iff
+    // mark[u] == epoch, so marks never have to be cleared
+    private int[] mark = new int[0];
+    private int epoch;
+    private int[] stack = new int[0];
+    private int stackSize;
+    private int[] visited = new int[0];
+    private int[] levelCount = new int[0];
+    // Pairs of nodes already checked by implies and disjoint. Stamped with
+    // pairEpoch like mark, open addressing on the pair
+    private long[] pairKey = new long[1024];
+    private int[] pairStamp = new int[1024];
+    private int pairEpoch;
+    private int pairCount;
     
     // Constructor. Equivalent to the init(T),init(H) method in Notes 
     // Here n is the number of variables.
     public ROBDD(int n){
-        // Initializing T to contain 0 and 1
-        nodeCount = 0;
-        capacity = n;
+        this(n,ROBDDConfig.DEFAULT);
+    }
+    
+    // Constructor. Sizes and grows the tables as given by config
+    public ROBDD(int n,ROBDDConfig config){
+        this(new ROBDDVariables(n),config);
+    }
+    
+    // Constructor. The variables are those of the registry, which may be
+    // shared with other ROBDDs
+    public ROBDD(ROBDDVariables variables,ROBDDConfig config){
+        this(variables,new ROBDDHeapStore(config));
+    }
+    
+    // Constructor. The tables are kept in store, which must be empty, for
+    // example an ROBDDOffHeapStore
+    public ROBDD(ROBDDVariables variables,ROBDDNodeStore store){
+        if(store.getNodeCount() != 0)
+            throw new IllegalArgumentException("Node store is not empty");
+        int n = variables.size();
+        this.variables = variables;
+        this.store = store;
         vars = n;
-        T = new int[capacity][3];
         
         // Adding 0 and 1 node. -1 indicates NULL.
-        T[0][0] = n+1;
-        T[0][1] = -1;
-        T[0][2] = -1;
-        T[1][0] = n+1;
-        T[1][1] = -1;
-        T[1][2] = -1;
-        nodeCount += 2;
-        
-        // Initializing H 
-        H = new int[capacity];
-        for(int i=0;i<capacity;i++)
-            H[i] = -1; 
+        store.add(n+1,-1,-1);
+        store.add(n+1,-1,-1);
+        // The terminals follow the variables declared later on, also when
+        // another ROBDD sharing the registry declares them
+        variables.attach(this);
     }
     
     // Getter-Setter Methods
     // getNodeCount : Returns the number of nodes in ROBDD
     public int getNodeCount(){
-        return nodeCount;
+        return store.getNodeCount();
+    }
+    
+    // getVariables : Returns the variable registry of the ROBDD.
+    public ROBDDVariables getVariables(){
+        return variables;
+    }
+    
+    // getRestrictHits, getRestrictMisses : Return how often restrict found
+    // a node in its cache, or had to compute it
+    public long getRestrictHits(){
+        return restrictHits;
+    }
+    
+    public long getRestrictMisses(){
+        return restrictMisses;
     }
     
-    // getROBDDTable : Returns the ROBDD table of the ROBDD.
+    // getNodeStore : Returns the store holding the tables of the ROBDD.
+    public ROBDDNodeStore getNodeStore(){
+        return store;
+    }
+    
+    // getROBDDTable : Returns the ROBDD table of the ROBDD. Throws
+    // UnsupportedOperationException if the store does not keep T on the heap
     public int[][] getROBDDTable(){
-        return T;
+        return store.getTable();
     }
     
     // Public Interface
@@ -62,32 +140,33 @@ public class ROBDD{
         // Return in case the node is redundant
         if(l == h){
             return l;            
-        }else if(member(i,l,h)){
-            return lookup(i,l,h);
-        }else{ 
-            int node = add(i,l,h);
-            insert(i,l,h,node);
-            return node;
         }
-            
+        int node = store.lookup(i,l,h);
+        if(node == -1){ 
+            node = store.add(i,l,h);
+            store.insert(node);
+        }
+        return node;
     } 
     
     // print : Prints the table T and H. Useful for debugging
     public void print(){
         System.out.println("Current State of T Table");    
-        for(int i=0;i<nodeCount;i++){
-            System.out.println(i + " " + T[i][0] 
-                                 + " " + T[i][1] 
-                                 + " " + T[i][2]);                      
+        for(int i=0;i<store.getNodeCount();i++){
+            System.out.println(i + " " + store.getVar(i) 
+                                 + " " + store.getLow(i) 
+                                 + " " + store.getHigh(i));                      
         }
         System.out.println("Current State of H Table");              
-        for(int i=0;i<H.length;i++){
-            if(H[i] != -1) System.out.println(i + " " + H[i]);
+        for(int i=0;i<store.getUniqueTableSize();i++){
+            int node = store.getUnique(i);
+            if(node != -1) System.out.println(i + " " + node);
         }
     }   
     
     // build(booleanExp,RootVar) : Recursively builds the ROBDD
     public int build(String exp,int i){
+        if(cancelToken != null) cancelToken.poll();
         if(i > vars){
             if(eval(exp)) return 1;
             else return 0;
@@ -98,85 +177,553 @@ public class ROBDD{
         }
     }
      
+    
+    // build(booleanExp,RootVar,token) : Builds the ROBDD, stopping with
+    // ROBDDCancelledException once token is cancelled or expires. If the
+    // build fails, the nodes it added are removed again.
+    public int build(String exp,int i,ROBDDCancelToken token){
+        int rollbackTo = store.getNodeCount();
+        cancelToken = token;
+        try{
+            token.check();
+            return build(exp,i);
+        }catch(RuntimeException e){
+            rollback(rollbackTo);
+            throw e;
+        }finally{
+            cancelToken = null;
+        }
+    }
+    
+    // build(ROBDDExpression) : Builds the parsed expression and returns its
+    // root. Variables are looked up by name, and names not known yet are
+    // declared as new variables. Every DAG node is built once, in index
+    // order, so no recursion over the DAG.
+    public int build(ROBDDExpression e){
+        int[] index = new int[e.getVariableCount()];
+        for(int k=0;k<index.length;k++)
+            index[k] = declare(e.getVariableName(k));
+        int[] built = new int[e.getNodeCount()];
+        for(int k=0;k<built.length;k++){
+            int l = e.getLeft(k);
+            int r = e.getRight(k);
+            switch(e.getOp(k)){
+                case ROBDDExpression.CONST : built[k] = l; break;
+                case ROBDDExpression.VAR : built[k] = mk(index[l],0,1); break;
+                case ROBDDExpression.NOT : built[k] = not(built[l]); break;
+                case ROBDDExpression.AND : built[k] = apply(AND,built[l],built[r]); break;
+                case ROBDDExpression.OR : built[k] = apply(OR,built[l],built[r]); break;
+                case ROBDDExpression.XOR : built[k] = apply(XOR,built[l],built[r]); break;
+                case ROBDDExpression.IMP : built[k] = apply(IMP,built[l],built[r]); break;
+                default : built[k] = apply(BIIMP,built[l],built[r]);
+            }
+        }
+        return built[e.getRoot()];
+    }
+    
+    // declare(name) : Returns the index of the named variable, adding it
+    // below all existing variables if it is new. Existing nodes are kept.
+    public int declare(String name){
+        return variables.declare(name);
+    }
+    
+    // apply(op,u1,u2) : Returns the root of u1 op u2, both nodes of this
+    // ROBDD, op being one of AND, OR, XOR, IMP, BIIMP or any truth table
+    public int apply(int op,int u1,int u2){
+        return app(op,u1,u2);
+    }
+    
+    // cube(vars) : Returns the root of the conjunction of the variables, as
+    // used by exists and andExists
+    public int cube(int... cubeVars){
+        int[] sorted = cubeVars.clone();
+        Arrays.sort(sorted);
+        int u = 1;
+        for(int k=sorted.length-1;k>=0;k--)
+            if(k == sorted.length-1 || sorted[k] != sorted[k+1]) u = mk(sorted[k],0,u);
+        return u;
+    }
+    
+    // exists(u,cube) : Returns the root of u with the variables of cube
+    // existentially quantified
+    public int exists(int u,int cube){
+        return andExists(u,1,cube);
+    }
+    
+    // andExists(f,g,cube) : Returns the root of (exists cube. f AND g),
+    // without building f AND g first. Variables are quantified as soon as
+    // the recursion passes them.
+    public int andExists(int f,int g,int cube){
+        return appEx(f,g,cube);
+    }
+    
+    // replace(u,map) : Returns the root of u with every variable i renamed
+    // to map[i]. map needs a length of at least vars+1. Renamings that keep
+    // the order below each node are done with mk, others with apply.
+    public int replace(int u,int[] map){
+        int[] memo = new int[store.getNodeCount()];
+        Arrays.fill(memo,-1);
+        return rep(u,map,memo);
+    }
+    
+    // not(u) : Returns the root of NOT u
+    public int not(int u){
+        return apply(XOR,u,1);
+    }
+    
+    // restrict(u,var,val) : Returns the root of u with variable var set to
+    // val. Cofactors are kept in a bounded cache shared by all calls.
+    public int restrict(int u,int var,int val){
+        return res(u,var,val);
+    }
+    
+    // restrict(u,vars,vals) : Returns the root of u with every vars[k] set
+    // to vals[k]. The variables are set one after the other in the given
+    // order, so assignments starting alike share their cached cofactors.
+    public int restrict(int u,int[] restrictVars,int[] vals){
+        for(int k=0;k<restrictVars.length;k++) u = res(u,restrictVars[k],vals[k]);
+        return u;
+    }
+    
+    // equals(f,g) : Returns whether f and g are the same function. The
+    // ROBDD is canonical, so this is a comparison of the roots.
+    public boolean equals(int f,int g){
+        return f == g;
+    }
+    
+    // implies(f,g) : Returns whether f -> g holds for every assignment. No
+    // nodes are created, and the traversal stops at the first counter
+    // example.
+    public boolean implies(int f,int g){
+        beginPairs();
+        return impliesRec(f,g);
+    }
+    
+    // disjoint(f,g) : Returns whether f and g are never both 1. No nodes
+    // are created, and the traversal stops at the first common assignment.
+    public boolean disjoint(int f,int g){
+        beginPairs();
+        return disjointRec(f,g);
+    }
+    
+    // save(file) : Writes the node table, the unique table and the computed
+    // tables of apply, andExists and restrict to file, together with the
+    // variable names, so that a later load continues with warm caches
+    public void save(File file) throws IOException{
+        try(DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file),1 << 16))){
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(variables.fingerprint());
+            out.writeInt(vars);
+            for(int i=1;i<=vars;i++) out.writeUTF(variables.nameOf(i));
+            List<int[]> groups = variables.getGroups();
+            out.writeInt(groups.size());
+            for(int[] group : groups){
+                out.writeInt(group[0]);
+                out.writeInt(group.length);
+            }
+            int nodeCount = store.getNodeCount();
+            out.writeInt(nodeCount);
+            for(int j=2;j<nodeCount;j++){
+                out.writeInt(store.getVar(j));
+                out.writeInt(store.getLow(j));
+                out.writeInt(store.getHigh(j));
+            }
+            out.writeInt(store.getUniqueTableSize());
+            for(int k=0;k<store.getUniqueTableSize();k++)
+                out.writeInt(store.getUnique(k));
+            out.writeBoolean(store.hasCaches());
+            if(store.hasCaches()){
+                writeCache(out,APPLY_CACHE);
+                writeCache(out,AND_EXISTS_CACHE);
+                writeCache(out,RESTRICT_CACHE);
+            }
+        }
+    }
+    
+    // load(file,variables,config) : Reads an ROBDD written by save. Returns
+    // null if the snapshot is of another version or was saved with other
+    // variables or another variable order, in which case it has to be built
+    // again. The variables of the ROBDD are those of the registry. The
+    // computed tables are kept if config has the same cacheSize.
+    public static ROBDD load(File file,ROBDDVariables variables,ROBDDConfig config)
+        throws IOException{
+        try(DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file),1 << 16))){
+            if(in.readInt() != SNAPSHOT_MAGIC)
+                throw new IOException(file + " is not an ROBDD snapshot");
+            if(in.readInt() != SNAPSHOT_VERSION) return null;
+            if(in.readLong() != variables.fingerprint()) return null;
+            int n = in.readInt();
+            if(n != variables.size()) return null;
+            for(int i=1;i<=n;i++)
+                if(!in.readUTF().equals(variables.nameOf(i))) return null;
+            // Groups are restored if the registry has none yet
+            int groupCount = in.readInt();
+            boolean restoreGroups = variables.getGroups().isEmpty();
+            for(int k=0;k<groupCount;k++){
+                int first = in.readInt();
+                int size = in.readInt();
+                if(!restoreGroups) continue;
+                String[] names = new String[size];
+                for(int m=0;m<size;m++) names[m] = variables.nameOf(first + m);
+                variables.group(names);
+            }
+            
+            ROBDD bdd = new ROBDD(variables,config);
+            ROBDDNodeStore store = bdd.store;
+            int count = in.readInt();
+            if(count > config.getNodeLimit())
+                throw new ROBDDNodeLimitException(config.getNodeLimit());
+            for(int j=2;j<count;j++) store.add(in.readInt(),in.readInt(),in.readInt());
+            // H is taken over slot by slot, without rehashing any node
+            int[] slots = readInts(in);
+            int used = 0;
+            for(int k=0;k<slots.length;k++){
+                if(slots[k] == -1) continue;
+                if(slots[k] < 2 || slots[k] >= count)
+                    throw new IOException(file + " has a corrupt unique table");
+                used++;
+            }
+            if(Integer.bitCount(slots.length) != 1 || used != count - 2
+               || used == slots.length)
+                throw new IOException(file + " has a corrupt unique table");
+            store.setUniqueTable(slots);
+            if(in.readBoolean()){
+                for(int t : new int[]{APPLY_CACHE,AND_EXISTS_CACHE,RESTRICT_CACHE}){
+                    long[] key = readLongs(in);
+                    int[] aux = readInts(in);
+                    int[] value = readInts(in);
+                    if(key.length != store.getCacheSize()) continue;
+                    for(int k=0;k<key.length;k++)
+                        store.setCacheEntry(t,k,key[k],aux[k],value[k]);
+                }
+            }
+            return bdd;
+        }
+    }
+    
+    // nodeCount(root) : Returns the number of nodes reachable from root,
+    // terminals included
+    public int nodeCount(int root){
+        beginTraversal();
+        push(root);
+        return traverse();
+    }
+    
+    // nodeCount(roots) : Returns the number of nodes reachable from any of
+    // the roots. Shared nodes are counted once.
+    public int nodeCount(int... roots){
+        beginTraversal();
+        for(int k=0;k<roots.length;k++) push(roots[k]);
+        return traverse();
+    }
+    
+    // support(root) : Returns the variables the ROBDD at root depends on,
+    // in increasing order
+    public int[] support(int root){
+        beginTraversal();
+        push(root);
+        int count = traverse();
+        countLevels(count);
+        int size = 0;
+        for(int i=1;i<=vars;i++) if(levelCount[i] != 0) size++;
+        int[] support = new int[size];
+        size = 0;
+        for(int i=1;i<=vars;i++) if(levelCount[i] != 0) support[size++] = i;
+        return support;
+    }
+    
+    // levelProfile(roots) : Returns the number of nodes labelled with each
+    // variable below the roots. widths[i-1] is the width of variable i
+    public int[] levelProfile(int... roots){
+        int[] widths = new int[vars];
+        levelProfile(roots,widths);
+        return widths;
+    }
+    
+    // levelProfile(roots,widths) : Same as levelProfile(roots), writing into
+    // widths, which needs a length of at least vars
+    public void levelProfile(int[] roots,int[] widths){
+        beginTraversal();
+        for(int k=0;k<roots.length;k++) push(roots[k]);
+        countLevels(traverse());
+        for(int i=1;i<=vars;i++) widths[i-1] = levelCount[i];
+    }
      
     // Private Implementation 
-    /* Supporting Operations on T*/
-    // add(i,l,h) : Adds and returns a new node with var(u) = i, var(l) = l ...
-    // Takes O(1) time
-    private int add(int i,int l,int h){
-        int curNodeIndex = nodeCount++;
-        if(curNodeIndex == capacity) expandArray();
-        T[curNodeIndex][0] = i;
-        T[curNodeIndex][1] = l;
-        T[curNodeIndex][2] = h;
-        return curNodeIndex;
-    }
-    
-    /* Supporint Opeartions on H */
-    // member(i,l,h) : Returns whether node with attributes is already in ROBDD.
-    // Takes O(1) time
-    private boolean member(int i, int l, int h){
-        int hashCode = generateHash(i,l,h);
-        // Not present in extended capacity
-        if(hashCode>(H.length-1)) return false;
-        // Not present in current capacity
-        return H[hashCode] != -1 ;
+    // Recursively computes u1 op u2
+    private int app(int op,int u1,int u2){
+        if(u1 <= 1 && u2 <= 1) return (op >> (2*u1 + u2)) & 1;
+        // One terminal operand : the result may be constant or the other one
+        if(u1 <= 1){
+            int row = (op >> (2*u1)) & 3;
+            if(row == 0 || row == 3) return row & 1;
+            if(row == 2) return u2;
+        }
+        if(u2 <= 1){
+            int column = ((op >> u2) & 1) | (((op >> (2 + u2)) & 1) << 1);
+            if(column == 0 || column == 3) return column & 1;
+            if(column == 2) return u1;
+        }
+        // Equal operands : only the rows a = b of op matter
+        if(u1 == u2){
+            int diagonal = (op & 1) | ((op >> 2) & 2);
+            if(diagonal == 0 || diagonal == 3) return diagonal & 1;
+            if(diagonal == 2) return u1;
+        }
+        if(cancelToken != null) cancelToken.poll();
+        long key = ((long) u1 << 32) | u2;
+        int cached = store.getCached(APPLY_CACHE,key,op);
+        if(cached != -1) return cached;
+        int v1 = store.getVar(u1);
+        int v2 = store.getVar(u2);
+        int u;
+        if(v1 == v2){
+            u = mk(v1,app(op,store.getLow(u1),store.getLow(u2)),
+                      app(op,store.getHigh(u1),store.getHigh(u2)));
+        }else if(v1 < v2){
+            u = mk(v1,app(op,store.getLow(u1),u2),app(op,store.getHigh(u1),u2));
+        }else{
+            u = mk(v2,app(op,u1,store.getLow(u2)),app(op,u1,store.getHigh(u2)));
+        }
+        store.putCached(APPLY_CACHE,key,op,u);
+        return u;
+    }
+    
+    // Recursively computes exists cube. f AND g
+    private int appEx(int f,int g,int cube){
+        if(f == 0 || g == 0) return 0;
+        if(f == 1 && g == 1) return 1;
+        if(f > g){
+            int temp = f;
+            f = g;
+            g = temp;
+        }
+        int v = Math.min(store.getVar(f),store.getVar(g));
+        // Cube variables above v do not occur in f and g
+        while(store.getVar(cube) < v) cube = store.getHigh(cube);
+        if(cube == 1) return app(AND,f,g);
+        if(f == 1 && g == cube) return 1;
+        if(cancelToken != null) cancelToken.poll();
+        long key = ((long) f << 32) | g;
+        int cached = store.getCached(AND_EXISTS_CACHE,key,cube);
+        if(cached != -1) return cached;
+        int f0 = cofactor(f,v,0), f1 = cofactor(f,v,1);
+        int g0 = cofactor(g,v,0), g1 = cofactor(g,v,1);
+        int u;
+        if(store.getVar(cube) == v){
+            int rest = store.getHigh(cube);
+            int l = appEx(f0,g0,rest);
+            u = (l == 1) ? 1 : app(OR,l,appEx(f1,g1,rest));
+        }else{
+            u = mk(v,appEx(f0,g0,cube),appEx(f1,g1,cube));
+        }
+        store.putCached(AND_EXISTS_CACHE,key,cube,u);
+        return u;
+    }
+    
+    // Recursively computes u with var set to val
+    private int res(int u,int var,int val){
+        if(store.getVar(u) > var) return u;
+        if(store.getVar(u) == var)
+            return (val == 0) ? store.getLow(u) : store.getHigh(u);
+        long key = ((long) u << 32) | ((long) var << 1) | val;
+        int cached = store.getCached(RESTRICT_CACHE,key,0);
+        if(cached != -1){
+            restrictHits++;
+            return cached;
+        }
+        restrictMisses++;
+        int r = mk(store.getVar(u),res(store.getLow(u),var,val),
+                                   res(store.getHigh(u),var,val));
+        store.putCached(RESTRICT_CACHE,key,0,r);
+        return r;
+    }
+    
+    // Recursively renames the variables below u, memo holding done nodes
+    private int rep(int u,int[] map,int[] memo){
+        if(u <= 1) return u;
+        if(memo[u] != -1) return memo[u];
+        int l = rep(store.getLow(u),map,memo);
+        int h = rep(store.getHigh(u),map,memo);
+        int x = map[store.getVar(u)];
+        int r;
+        if(x < store.getVar(l) && x < store.getVar(h)){
+            r = mk(x,l,h);
+        }else{
+            r = app(OR,app(AND,mk(x,0,1),h),app(AND,mk(x,1,0),l));
+        }
+        memo[u] = r;
+        return r;
+    }
+    
+    // syncVariables : Takes over variables added to the registry. Only the
+    // terminals, which sit below the last variable, have to be moved.
+    // Called by the registry for every new variable
+    void syncVariables(){
+        if(variables.size() == vars) return;
+        vars = variables.size();
+        store.setVar(0,vars+1);
+        store.setVar(1,vars+1);
+    }
+    
+    /* Snapshots */
+    // writeCache(out,table) : Writes the keys of a computed table, its aux
+    // fields and its results, each as an array
+    private void writeCache(DataOutputStream out,int table) throws IOException{
+        int size = store.getCacheSize();
+        out.writeInt(size);
+        for(int k=0;k<size;k++) out.writeLong(store.getCacheKey(table,k));
+        out.writeInt(size);
+        for(int k=0;k<size;k++) out.writeInt(store.getCacheAux(table,k));
+        out.writeInt(size);
+        for(int k=0;k<size;k++) out.writeInt(store.getCacheValue(table,k));
+    }
+    
+    private static int[] readInts(DataInputStream in) throws IOException{
+        int[] a = new int[in.readInt()];
+        for(int k=0;k<a.length;k++) a[k] = in.readInt();
+        return a;
+    }
+    
+    private static long[] readLongs(DataInputStream in) throws IOException{
+        long[] a = new long[in.readInt()];
+        for(int k=0;k<a.length;k++) a[k] = in.readLong();
+        return a;
+    }
+    
+    /* Pairwise checks */
+    private boolean impliesRec(int f,int g){
+        if(f == 0 || g == 1 || f == g) return true;
+        // g is 0, or f is 1 while g is not : both have a counter example
+        if(g == 0 || f == 1) return false;
+        if(!firstVisit(0,f,g)) return true;
+        int v = Math.min(store.getVar(f),store.getVar(g));
+        return impliesRec(cofactor(f,v,0),cofactor(g,v,0))
+            && impliesRec(cofactor(f,v,1),cofactor(g,v,1));
+    }
+    
+    private boolean disjointRec(int f,int g){
+        if(f == 0 || g == 0) return true;
+        // Any other node is satisfiable
+        if(f == 1 || g == 1 || f == g) return false;
+        if(f > g){
+            int temp = f;
+            f = g;
+            g = temp;
+        }
+        if(!firstVisit(1,f,g)) return true;
+        int v = Math.min(store.getVar(f),store.getVar(g));
+        return disjointRec(cofactor(f,v,0),cofactor(g,v,0))
+            && disjointRec(cofactor(f,v,1),cofactor(g,v,1));
     }
- 
-    // lookup(i,l,h) : Returns the node with attributes in ROBDD 
-    // Takes O(1) time
-    private int lookup(int i,int l,int h){
-        int hashCode = generateHash(i,l,h);
-        return H[hashCode];    
-    }     
- 
-    // insert(i,l,h) : Inserts node with attributes i,l,h,node into Hash Table
-    private void insert(int i,int l,int h,int node){
-        int hashCode = generateHash(i,l,h);
-        if(hashCode>(H.length+1)) renewHashTable(hashCode);
-        if(H[hashCode] != -1) renewHashTable(hashCode);
-        H[hashCode] = node;
-        return;    
-    }
-    
-    private void expandArray(){
-        capacity *= 2;
-        int[][] temp = new int[capacity][3];
-        for(int i=0;i<T.length;i++){
-            temp[i][0] = T[i][0];
-            temp[i][1] = T[i][1];
-            temp[i][2] = T[i][2];
-        }
-        T = temp;
-    }
-   
-    // Private method to generate a HashCode
-    private int generateHash(int i,int l,int h){
-        int hashCode = (pair(i,pair(l,h)));
-        return hashCode;    
-    }   
-   
-    // pair(i,j) useful function for generation of hash code
-    private int pair(int i,int j){
-        return (((i+j)*(i+j+1))/2 + i);
-    } 
     
-    // renewing hash table in case of fulfilled capacity
-    private void renewHashTable(int hashCode){
-        int newSize = hashCode + 1;
-        int[] newH= new int[newSize];
-        for(int j=0;j<newSize;j++){
-            newH[j] = -1;
+    // Returns node with variable v set to val, v being at most var(node)
+    private int cofactor(int node,int v,int val){
+        if(store.getVar(node) != v) return node;
+        return (val == 0) ? store.getLow(node) : store.getHigh(node);
+    }
+    
+    private void beginPairs(){
+        if(pairEpoch == Integer.MAX_VALUE){
+            Arrays.fill(pairStamp,0);
+            pairEpoch = 0;
         }
-        for(int j=2;j<nodeCount;j++){
-            int i = T[j][0];
-            int l = T[j][1];
-            int h = T[j][2];
-            int hashCodeCur = generateHash(i,l,h);
-            newH[hashCodeCur] = j; 
+        pairEpoch++;
+        pairCount = 0;
+    }
+    
+    // firstVisit(check,f,g) : Records the pair, returns false if it was
+    // already recorded in the current epoch
+    private boolean firstVisit(int check,int f,int g){
+        long key = ((long) check << 62) | ((long) f << 31) | g;
+        int mask = pairKey.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while(pairStamp[slot] == pairEpoch){
+            if(pairKey[slot] == key) return false;
+            slot = (slot + 1) & mask;
+        }
+        pairKey[slot] = key;
+        pairStamp[slot] = pairEpoch;
+        if(2*(++pairCount) > pairKey.length) renewPairs();
+        return true;
+    }
+    
+    // Doubles the pair table, keeping the pairs of the current epoch
+    private void renewPairs(){
+        long[] oldKey = pairKey;
+        int[] oldStamp = pairStamp;
+        pairKey = new long[2*oldKey.length];
+        pairStamp = new int[2*oldKey.length];
+        int mask = pairKey.length - 1;
+        for(int k=0;k<oldKey.length;k++){
+            if(oldStamp[k] != pairEpoch) continue;
+            int slot = (int) ((oldKey[k] * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while(pairStamp[slot] == pairEpoch) slot = (slot + 1) & mask;
+            pairKey[slot] = oldKey[k];
+            pairStamp[slot] = pairEpoch;
         }
-        H = newH;
-        return;
+    }
+    
+    /* Traversals */
+    // beginTraversal : Starts a new epoch, growing the work arrays if needed
+    private void beginTraversal(){
+        int nodeCount = store.getNodeCount();
+        if(mark.length < nodeCount){
+            int size = Math.max(nodeCount,2*mark.length);
+            mark = new int[size];
+            stack = new int[size];
+            visited = new int[size];
+            epoch = 0;
+        }
+        if(levelCount.length < vars + 2) levelCount = new int[vars + 2];
+        if(epoch == Integer.MAX_VALUE){
+            Arrays.fill(mark,0);
+            epoch = 0;
+        }
+        epoch++;
+        stackSize = 0;
+    }
+    
+    // push(u) : Schedules u for the current traversal unless already seen
+    private void push(int u){
+        if(mark[u] == epoch) return;
+        mark[u] = epoch;
+        stack[stackSize++] = u;
+    }
+    
+    // traverse : Visits everything reachable from the pushed nodes, stores
+    // the nodes in visited and returns their number
+    private int traverse(){
+        int count = 0;
+        while(stackSize > 0){
+            int u = stack[--stackSize];
+            visited[count++] = u;
+            if(u > 1){
+                push(store.getLow(u));
+                push(store.getHigh(u));
+            }
+        }
+        return count;
+    }
+    
+    // countLevels(count) : Counts the first count visited nodes per variable
+    private void countLevels(int count){
+        Arrays.fill(levelCount,0);
+        for(int k=0;k<count;k++){
+            int u = visited[k];
+            if(u > 1) levelCount[store.getVar(u)]++;
+        }
+    }
+    
+    // rollback(rollbackTo) : Removes the nodes from rollbackTo on, and
+    // rebuilds H
+    private void rollback(int rollbackTo){
+        store.truncate(rollbackTo);
+        // Results in G may point to removed nodes
+        store.clearCaches();
     }
  
     // Evaluates boolean expressions passed in as strings
@@ -206,6 +753,81 @@ public class ROBDD{
                          "&& NOT(x3&&NOT(x4) || NOT(x3)&&x4)";
         test.build(boolExp,1);
         test.print();   
+        
+        int root = test.getNodeCount() - 1;
+        System.out.println("Support : " + Arrays.toString(test.support(root)));
+        System.out.println("Nodes below root : " + test.nodeCount(root));
+        System.out.println("Nodes below 5 and 6 : " + test.nodeCount(5,6));
+        System.out.println("Level profile : " 
+                           + Arrays.toString(test.levelProfile(root)));
+        
+        int same = test.build(ROBDDExpression.parse("(x1 <-> x2) & (x3 <-> x4)"));
+        int both = test.build(ROBDDExpression.parse("x1 & x2"));
+        int differ = test.build(ROBDDExpression.parse("x1 ^ x2"));
+        System.out.println("equals : " + test.equals(root,same)
+                           + ", implies : " + test.implies(root,both)
+                           + ", disjoint : " + test.disjoint(root,differ));
+        
+        // Restricting on assignments that start alike
+        int[] order = {4,3,2};
+        for(int a=0;a<8;a++)
+            test.restrict(root,order,new int[]{a & 1,(a >> 1) & 1,(a >> 2) & 1});
+        System.out.println("Restrict cache : " + test.getRestrictHits() + " hits, "
+                           + test.getRestrictMisses() + " misses");
+        
+        // Snapshot and warm restart. A registry with another order does not
+        // accept the snapshot.
+        try{
+            File file = File.createTempFile("robdd",".snapshot");
+            file.deleteOnExit();
+            test.save(file);
+            ROBDD warm = load(file,new ROBDDVariables(4),ROBDDConfig.DEFAULT);
+            boolean sameH = true;
+            for(int k=0;k<test.store.getUniqueTableSize();k++)
+                sameH &= test.store.getUnique(k) == warm.store.getUnique(k);
+            System.out.println("Same unique table : " + sameH);
+            System.out.println("Reloaded " + warm.getNodeCount() + " nodes, same root : "
+                               + (warm.build(ROBDDExpression.parse(
+                                      "(x1 <-> x2) & (x3 <-> x4)")) == root));
+            ROBDDVariables reordered = new ROBDDVariables();
+            for(String name : new String[]{"x2","x1","x3","x4"}) reordered.declare(name);
+            System.out.println("Reordered registry : "
+                               + load(file,reordered,ROBDDConfig.DEFAULT));
+        }catch(IOException e){
+            System.out.println(e.getMessage());
+        }
+        
+        // Same ROBDD with a hard limit of 5 nodes
+        ROBDDConfig config = new ROBDDConfig.Builder().initialNodeCapacity(4)
+                                                      .maxNodes(5)
+                                                      .build();
+        try{
+            new ROBDD(4,config).build(boolExp,1);
+        }catch(ROBDDNodeLimitException e){
+            System.out.println(e.getMessage());
+        }
+        
+        // Same ROBDD with a deadline that has already passed
+        ROBDD late = new ROBDD(4);
+        try{
+            late.build(boolExp,1,ROBDDCancelToken.withTimeout(0,1));
+        }catch(ROBDDCancelledException e){
+            System.out.println(e.getMessage() + ", nodes left : " 
+                               + late.getNodeCount());
+        }
+        
+        // Two ROBDDs sharing one registry. Variables declared through one of
+        // them, or through the registry, move the terminals of both
+        ROBDDVariables shared = new ROBDDVariables(1);
+        ROBDD b1 = new ROBDD(shared,ROBDDConfig.DEFAULT);
+        ROBDD b2 = new ROBDD(shared,ROBDDConfig.DEFAULT);
+        b1.declare("y");
+        int y = b2.mk(shared.indexOf("y"),0,1);
+        shared.declare("z");
+        int z = b1.mk(shared.indexOf("z"),0,1);
+        System.out.println("Shared registry : y OR NOT y = " + b2.apply(OR,y,b2.not(y))
+                           + " in the second ROBDD, z OR NOT z = "
+                           + b1.apply(OR,z,b1.not(z)) + " in the first");
                      
     }   
 }
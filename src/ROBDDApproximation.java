@@ -0,0 +1,410 @@
+/* =========================================================================== *
+ * File : ROBDDApproximation.java                                              *
+ * =========================================================================== *
+ * Class that approximates an ROBDD by a smaller one, for when the exact       *
+ * ROBDD is too large to keep. An under-approximation (subset) implies the     *
+ * function and an over-approximation (superset) is implied by it; both aim    *
+ * at a node budget while keeping as many of the assignments as they can.      *
+ * Heavy branch subsetting follows the path of the children with more          *
+ * satisfying assignments and replaces the lighter children above a cut by 0.  *
+ * Remapping replaces a node by 0, or by one of its children when that child   *
+ * implies the other, whenever doing so does not lower the density (satisfying *
+ * assignments per node); heavy branch subsetting finishes the job if the      *
+ * budget is still not met. Supersets are the complements of the subsets of    *
+ * the complement. Each call returns a Result with the sizes, the counts of    *
+ * satisfying assignments and the density loss.                                *
+ * Prime Methods : subsetHeavyBranch(root,threshold)                           *
+ *               : supersetHeavyBranch(root,threshold)                         *
+ *               : remapUnderApprox(root,threshold)                            *
+ *               : remapOverApprox(root,threshold)                             *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ROBDDApproximation{
+
+    // Replacements of a node by remapping
+    private static final int KEEP = 0;
+    private static final int ZERO = 1;
+    private static final int LOW = 2;
+    private static final int HIGH = 3;
+
+    private ROBDD bdd;
+    private int[][] T;
+    // Per node data, indexed by node and valid for the nodes of the last
+    // collected ROBDD. fraction[u] is the share of all assignments that
+    // satisfy u, reach[u] the share whose path passes through u.
+    private double[] fraction = new double[0];
+    private double[] reach = new double[0];
+    private int[] refs = new int[0];
+    private int[] replacement = new int[0];
+    private int[] rebuilt = new int[0];
+    private int[] mark = new int[0];
+    private int epoch;
+    // Nodes of the last collected ROBDD, children before parents
+    private int[] nodes = new int[0];
+    private int size;
+    // Nodes whose refs were lowered by freed, to undo
+    private int[] undo = new int[64];
+    private int undoSize;
+
+    // Constructor
+    public ROBDDApproximation(ROBDD bdd){
+        this.bdd = bdd;
+    }
+
+    // Public Interface
+    // subsetHeavyBranch(root,threshold) : Returns a subset of root of at
+    // most threshold nodes (terminals included), by heavy branch subsetting.
+    // If even the heaviest path alone has more nodes, that path is returned.
+    public Result subsetHeavyBranch(int root,int threshold){
+        return result(root,heavyBranch(root,threshold),false);
+    }
+
+    // supersetHeavyBranch(root,threshold) : Returns a superset of root of at
+    // most threshold nodes, by heavy branch subsetting of NOT root
+    public Result supersetHeavyBranch(int root,int threshold){
+        return result(root,bdd.not(heavyBranch(bdd.not(root),threshold)),true);
+    }
+
+    // remapUnderApprox(root,threshold) : Returns a subset of root of at most
+    // threshold nodes, by remapping and then, if needed, heavy branch
+    // subsetting
+    public Result remapUnderApprox(int root,int threshold){
+        return result(root,remap(root,threshold),false);
+    }
+
+    // remapOverApprox(root,threshold) : Returns a superset of root of at
+    // most threshold nodes, by remapping NOT root
+    public Result remapOverApprox(int root,int threshold){
+        return result(root,bdd.not(remap(bdd.not(root),threshold)),true);
+    }
+
+    // Private Implementation
+    // heavyBranch(root,threshold) : Returns the subset. path[k] is the k-th
+    // node of the heavy path. Cutting at depth d keeps path[d] whole and the
+    // d nodes above it, their light children replaced by 0; the smallest d
+    // that fits is found by bisection, the size being non increasing in d.
+    // Light children above the cut are then kept again, heaviest first, as
+    // long as the budget allows.
+    private int heavyBranch(int root,int threshold){
+        collect(root);
+        if(size <= threshold) return root;
+        int[] path = new int[T[0][0]];
+        int length = 0;
+        for(int u=root;u>1;u=heavy(u)) path[length++] = u;
+        path[length] = heavyTerminal(path,length,root);
+
+        int lo = 0, hi = length;
+        while(lo < hi){
+            int d = (lo + hi)/2;
+            if(d + bdd.nodeCount(path[d],0) <= threshold) hi = d;
+            else lo = d + 1;
+        }
+        int cut = lo;
+
+        // Light children above the cut, by their share of the assignments
+        Integer[] byWeight = new Integer[cut];
+        for(int k=0;k<cut;k++) byWeight[k] = k;
+        final double[] weight = new double[cut];
+        for(int k=0;k<cut;k++)
+            weight[k] = fraction[light(path[k])] / Math.pow(2,k + 1);
+        Arrays.sort(byWeight,(a,b) -> Double.compare(weight[b],weight[a]));
+        boolean[] keep = new boolean[cut];
+        int[] roots = new int[cut + 2];
+        roots[0] = path[cut];
+        roots[1] = 0;
+        int kept = 2;
+        for(int k : byWeight){
+            if(weight[k] == 0) break;
+            roots[kept] = light(path[k]);
+            if(cut + bdd.nodeCount(Arrays.copyOf(roots,kept + 1)) <= threshold){
+                keep[k] = true;
+                kept++;
+            }
+        }
+
+        int result = path[cut];
+        for(int k=cut-1;k>=0;k--){
+            int u = path[k];
+            int other = keep[k] ? light(u) : 0;
+            result = (heavy(u) == T[u][2]) ? bdd.mk(T[u][0],other,result)
+                                           : bdd.mk(T[u][0],result,other);
+        }
+        return result;
+    }
+
+    // heavy(u), light(u) : Child of u with more (fewer) satisfying
+    // assignments, ties going to the high child
+    private int heavy(int u){
+        return (fraction[T[u][2]] >= fraction[T[u][1]]) ? T[u][2] : T[u][1];
+    }
+
+    private int light(int u){
+        return (heavy(u) == T[u][2]) ? T[u][1] : T[u][2];
+    }
+
+    // The terminal that ends the heavy path. It is 1 unless root is 0.
+    private int heavyTerminal(int[] path,int length,int root){
+        if(length == 0) return root;
+        return heavy(path[length - 1]);
+    }
+
+    // remap(root,threshold) : Returns the subset. Nodes are visited parents
+    // first. A live node may be replaced by 0, or by its low (high) child if
+    // that child implies the other one. The candidate freeing the most nodes
+    // per assignment lost is taken if it keeps the density, the freed nodes
+    // being found by dropping reference counts.
+    private int remap(int root,int threshold){
+        collect(root);
+        if(size <= threshold) return root;
+        for(int k=0;k<size;k++){
+            int u = nodes[k];
+            refs[u] = 0;
+            reach[u] = 0;
+            replacement[u] = KEEP;
+        }
+        for(int k=0;k<size;k++){
+            int u = nodes[k];
+            if(u > 1){
+                refs[T[u][1]]++;
+                refs[T[u][2]]++;
+            }
+        }
+        refs[root]++;
+        reach[root] = 1;
+        int live = size;
+        double minterms = fraction[root];
+
+        for(int k=size-1;k>=0;k--){
+            int u = nodes[k];
+            if(u <= 1 || refs[u] == 0) continue;
+            int low = T[u][1], high = T[u][2];
+            if(live > threshold){
+                int best = KEEP;
+                int bestGain = 0;
+                double bestLoss = 0;
+                for(int option=ZERO;option<=HIGH;option++){
+                    int target = (option == LOW) ? low : high;
+                    int other = (option == LOW) ? high : low;
+                    if(option != ZERO && (fraction[target] > fraction[other]
+                                          || !bdd.implies(target,other)))
+                        continue;
+                    int gain = 1;
+                    if(option == ZERO){
+                        gain += freed(low);
+                        gain += freed(high);
+                    }else{
+                        gain += freed(other);
+                    }
+                    restore();
+                    double loss = reach[u]*(fraction[u]
+                                            - ((option == ZERO) ? 0 : fraction[target]));
+                    // Keeps the density : loss/minterms <= gain/live
+                    if(loss*live > gain*minterms) continue;
+                    if(best == KEEP || loss*bestGain < bestLoss*gain){
+                        best = option;
+                        bestGain = gain;
+                        bestLoss = loss;
+                    }
+                }
+                if(best != KEEP){
+                    replacement[u] = best;
+                    int freedNodes = 1;
+                    if(best == ZERO){
+                        freedNodes += freed(low) + freed(high);
+                    }else{
+                        int target = (best == LOW) ? low : high;
+                        refs[target] += refs[u];
+                        reach[target] += reach[u];
+                        freedNodes += freed((best == LOW) ? high : low) + freed(target);
+                    }
+                    undoSize = 0;
+                    refs[u] = 0;
+                    live -= freedNodes;
+                    minterms -= bestLoss;
+                    continue;
+                }
+            }
+            reach[low] += reach[u]/2;
+            reach[high] += reach[u]/2;
+        }
+
+        Arrays.fill(rebuilt,0,bdd.getNodeCount(),-1);
+        int result = rebuild(root);
+        return heavyBranch(result,threshold);
+    }
+
+    // freed(u) : Drops one reference to u, and the references of every node
+    // left without any. Returns the number of nodes left without references.
+    // The drops are recorded for restore.
+    private int freed(int u){
+        int count = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = u;
+        while(top > 0){
+            int v = stack[--top];
+            if(v <= 1) continue;
+            if(undoSize == undo.length) undo = Arrays.copyOf(undo,2*undoSize);
+            undo[undoSize++] = v;
+            if(--refs[v] > 0) continue;
+            count++;
+            if(top + 2 > stack.length) stack = Arrays.copyOf(stack,2*stack.length);
+            stack[top++] = T[v][1];
+            stack[top++] = T[v][2];
+        }
+        return count;
+    }
+
+    // restore : Undoes the drops made by freed since the last restore
+    private void restore(){
+        while(undoSize > 0) refs[undo[--undoSize]]++;
+    }
+
+    // rebuild(u) : Returns u with the replacements made
+    private int rebuild(int u){
+        if(u <= 1) return u;
+        if(rebuilt[u] != -1) return rebuilt[u];
+        int result;
+        if(replacement[u] == ZERO) result = 0;
+        else if(replacement[u] == LOW) result = rebuild(T[u][1]);
+        else if(replacement[u] == HIGH) result = rebuild(T[u][2]);
+        else result = bdd.mk(T[u][0],rebuild(T[u][1]),rebuild(T[u][2]));
+        rebuilt[u] = result;
+        return result;
+    }
+
+    // collect(root) : Stores the nodes of root in nodes, children first, and
+    // computes their fractions
+    private void collect(int root){
+        T = bdd.getROBDDTable();
+        int count = bdd.getNodeCount();
+        if(mark.length < count){
+            int capacity = Math.max(count,2*mark.length);
+            fraction = new double[capacity];
+            reach = new double[capacity];
+            refs = new int[capacity];
+            replacement = new int[capacity];
+            rebuilt = new int[capacity];
+            mark = new int[capacity];
+            epoch = 0;
+        }
+        if(epoch == Integer.MAX_VALUE){
+            Arrays.fill(mark,0);
+            epoch = 0;
+        }
+        epoch++;
+        size = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = root;
+        mark[root] = epoch;
+        while(top > 0){
+            int u = stack[--top];
+            if(size == nodes.length) nodes = Arrays.copyOf(nodes,Math.max(64,2*size));
+            nodes[size++] = u;
+            if(u <= 1) continue;
+            for(int c=1;c<=2;c++){
+                int child = T[u][c];
+                if(mark[child] == epoch) continue;
+                mark[child] = epoch;
+                if(top == stack.length) stack = Arrays.copyOf(stack,2*top);
+                stack[top++] = child;
+            }
+        }
+        Arrays.sort(nodes,0,size);
+        for(int k=0;k<size;k++){
+            int u = nodes[k];
+            fraction[u] = (u <= 1) ? u : (fraction[T[u][1]] + fraction[T[u][2]])/2;
+        }
+    }
+
+    // result(original,root,superset) : Measures root against original. The
+    // density loss of a superset is that of the complements.
+    private Result result(int original,int root,boolean superset){
+        int vars = bdd.getROBDDTable()[0][0] - 1;
+        double all = Math.pow(2,vars);
+        collect(original);
+        int originalNodes = size;
+        double originalMinterms = fraction[original]*all;
+        collect(root);
+        int nodeCount = size;
+        double minterms = fraction[root]*all;
+        double before = superset ? all - originalMinterms : originalMinterms;
+        double after = superset ? all - minterms : minterms;
+        double densityLoss = (before == 0) ? 0
+            : 1 - (after/nodeCount)/(before/originalNodes);
+        return new Result(root,nodeCount,minterms,originalNodes,originalMinterms,
+                          densityLoss);
+    }
+
+    // Outcome of one approximation. Nodes include the terminals; minterms
+    // count the satisfying assignments over all the variables of the ROBDD.
+    // densityLoss is 1 - density after / density before, density being
+    // minterms per node of the subset (of the complement, for supersets). It
+    // is negative when the approximation is denser.
+    public static class Result{
+        public final int root;
+        public final int nodes;
+        public final double minterms;
+        public final int originalNodes;
+        public final double originalMinterms;
+        public final double densityLoss;
+
+        Result(int root,int nodes,double minterms,int originalNodes,
+               double originalMinterms,double densityLoss){
+            this.root = root;
+            this.nodes = nodes;
+            this.minterms = minterms;
+            this.originalNodes = originalNodes;
+            this.originalMinterms = originalMinterms;
+            this.densityLoss = densityLoss;
+        }
+
+        public String toString(){
+            return nodes + " nodes (of " + originalNodes + "), "
+                   + (long) minterms + " minterms (of " + (long) originalMinterms
+                   + "), density loss " + String.format("%.3f",densityLoss);
+        }
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDApproximation implementation");
+        // x1 y1 + ... + xn yn with all the x above all the y : 2^(n+1) nodes
+        int n = 14;
+        ROBDD bdd = new ROBDD(0);
+        for(int i=1;i<=n;i++) bdd.declare("x" + i);
+        for(int i=1;i<=n;i++) bdd.declare("y" + i);
+        StringBuilder exp = new StringBuilder("x1 & y1");
+        for(int i=2;i<=n;i++) exp.append(" | x").append(i).append(" & y").append(i);
+        int f = bdd.build(ROBDDExpression.parse(exp.toString()));
+
+        ROBDDApproximation approx = new ROBDDApproximation(bdd);
+        int threshold = 500;
+        long start = System.nanoTime();
+        Result heavy = approx.subsetHeavyBranch(f,threshold);
+        System.out.println("Heavy branch subset : " + heavy + ", sound "
+                           + bdd.implies(heavy.root,f) + ", "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+        start = System.nanoTime();
+        Result remap = approx.remapUnderApprox(f,threshold);
+        System.out.println("Remap subset : " + remap + ", sound "
+                           + bdd.implies(remap.root,f) + ", "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+        start = System.nanoTime();
+        Result over = approx.supersetHeavyBranch(f,threshold);
+        System.out.println("Heavy branch superset : " + over + ", sound "
+                           + bdd.implies(f,over.root) + ", "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+        start = System.nanoTime();
+        Result remapOver = approx.remapOverApprox(f,threshold);
+        System.out.println("Remap superset : " + remapOver + ", sound "
+                           + bdd.implies(f,remapOver.root) + ", "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+    }
+}
@@ -0,0 +1,206 @@
+/* =========================================================================== *
+ * File : ROBDDBitVector.java                                                  *
+ * =========================================================================== *
+ * Class that represents an unsigned integer of fixed width as a vector of     *
+ * ROBDD roots, bit 0 being the least significant. Arithmetic builds the       *
+ * result bits with apply in the same ROBDD, arithmetic being modulo 2^width.  *
+ * Comparisons return the root of the condition. Vectors of variables are      *
+ * declared with their bits interleaved (a[0] b[0] a[1] b[1] ...), the order   *
+ * under which adders and comparators stay linear in the width.                *
+ * Prime Methods : variables(bdd,width,names), constant(bdd,width,value)       *
+ *               : add, sub, mulConst, shiftLeft, shiftRight                   *
+ *               : eq, eqConst, lessThan, lessEqual                            *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ROBDDBitVector{
+
+    private ROBDD bdd;
+    private int[] bits;
+
+    // Constructor. bits[i] is the root of bit i
+    public ROBDDBitVector(ROBDD bdd,int[] bits){
+        this.bdd = bdd;
+        this.bits = bits.clone();
+    }
+
+    // variables(bdd,width,names) : Returns one vector of variables per name,
+    // bit i of vector name being the variable name[i]. The bits of all the
+    // vectors are declared interleaved, bit 0 at the top.
+    public static ROBDDBitVector[] variables(ROBDD bdd,int width,String... names){
+        String[][] vectors = new String[names.length][width];
+        for(int k=0;k<names.length;k++)
+            for(int i=0;i<width;i++) vectors[k][i] = names[k] + "[" + i + "]";
+        for(String name : ROBDDOrdering.interleave(vectors)) bdd.declare(name);
+        ROBDDBitVector[] result = new ROBDDBitVector[names.length];
+        for(int k=0;k<names.length;k++){
+            int[] bits = new int[width];
+            for(int i=0;i<width;i++)
+                bits[i] = bdd.mk(bdd.getVariables().indexOf(vectors[k][i]),0,1);
+            result[k] = new ROBDDBitVector(bdd,bits);
+        }
+        return result;
+    }
+
+    // constant(bdd,width,value) : Returns the vector of the low width bits
+    // of value
+    public static ROBDDBitVector constant(ROBDD bdd,int width,long value){
+        int[] bits = new int[width];
+        for(int i=0;i<width;i++) bits[i] = (i < 64) ? (int) ((value >>> i) & 1) : 0;
+        return new ROBDDBitVector(bdd,bits);
+    }
+
+    // Getter-Setter Methods
+    // getWidth : Returns the number of bits
+    public int getWidth(){
+        return bits.length;
+    }
+
+    // getBit(i) : Returns the root of bit i
+    public int getBit(int i){
+        return bits[i];
+    }
+
+    // Public Interface
+    // add(other) : Returns this + other, by a ripple carry adder
+    public ROBDDBitVector add(ROBDDBitVector other){
+        return add(other,0);
+    }
+
+    // sub(other) : Returns this - other, as this + NOT other + 1
+    public ROBDDBitVector sub(ROBDDBitVector other){
+        checkWidth(other);
+        int[] inverted = new int[bits.length];
+        for(int i=0;i<bits.length;i++) inverted[i] = bdd.not(other.bits[i]);
+        return add(new ROBDDBitVector(bdd,inverted),1);
+    }
+
+    // mulConst(c) : Returns this * c, adding the shifted vectors for the one
+    // bits of c
+    public ROBDDBitVector mulConst(long c){
+        ROBDDBitVector product = constant(bdd,bits.length,0);
+        for(int i=0;i<bits.length && i<64;i++)
+            if(((c >>> i) & 1) != 0) product = product.add(shiftLeft(i));
+        return product;
+    }
+
+    // shiftLeft(k) : Returns this * 2^k
+    public ROBDDBitVector shiftLeft(int k){
+        int[] shifted = new int[bits.length];
+        for(int i=k;i<bits.length;i++) shifted[i] = bits[i - k];
+        return new ROBDDBitVector(bdd,shifted);
+    }
+
+    // shiftRight(k) : Returns this / 2^k, zeros coming in at the top
+    public ROBDDBitVector shiftRight(int k){
+        int[] shifted = new int[bits.length];
+        for(int i=0;i+k<bits.length;i++) shifted[i] = bits[i + k];
+        return new ROBDDBitVector(bdd,shifted);
+    }
+
+    // eq(other) : Returns the root of this == other
+    public int eq(ROBDDBitVector other){
+        checkWidth(other);
+        int result = 1;
+        for(int i=bits.length-1;i>=0;i--)
+            result = bdd.apply(ROBDD.AND,result,
+                               bdd.apply(ROBDD.BIIMP,bits[i],other.bits[i]));
+        return result;
+    }
+
+    // eqConst(c) : Returns the root of this == c
+    public int eqConst(long c){
+        return eq(constant(bdd,bits.length,c));
+    }
+
+    // lessThan(other) : Returns the root of this < other, unsigned
+    public int lessThan(ROBDDBitVector other){
+        return compare(other,0);
+    }
+
+    // lessEqual(other) : Returns the root of this <= other, unsigned
+    public int lessEqual(ROBDDBitVector other){
+        return compare(other,1);
+    }
+
+    // Private Implementation
+    // add(other,carry) : Returns this + other + carry, carry being a root
+    private ROBDDBitVector add(ROBDDBitVector other,int carry){
+        checkWidth(other);
+        int[] sum = new int[bits.length];
+        for(int i=0;i<bits.length;i++){
+            int a = bits[i];
+            int b = other.bits[i];
+            int half = bdd.apply(ROBDD.XOR,a,b);
+            sum[i] = bdd.apply(ROBDD.XOR,half,carry);
+            if(i + 1 < bits.length)
+                carry = bdd.apply(ROBDD.OR,bdd.apply(ROBDD.AND,a,b),
+                                  bdd.apply(ROBDD.AND,half,carry));
+        }
+        return new ROBDDBitVector(bdd,sum);
+    }
+
+    // compare(other,equal) : Returns the root of this < other, or of
+    // this <= other if equal is 1. Goes from bit 0 up : a higher bit that
+    // differs decides, otherwise the lower bits do.
+    private int compare(ROBDDBitVector other,int equal){
+        checkWidth(other);
+        int result = equal;
+        for(int i=0;i<bits.length;i++){
+            int a = bits[i];
+            int b = other.bits[i];
+            int less = bdd.apply(ROBDD.AND,bdd.not(a),b);
+            int same = bdd.apply(ROBDD.BIIMP,a,b);
+            result = bdd.apply(ROBDD.OR,less,bdd.apply(ROBDD.AND,same,result));
+        }
+        return result;
+    }
+
+    private void checkWidth(ROBDDBitVector other){
+        if(other.bits.length != bits.length)
+            throw new IllegalArgumentException("Widths differ : " + bits.length
+                                               + " and " + other.bits.length);
+        if(other.bdd != bdd)
+            throw new IllegalArgumentException("Vectors of different ROBDDs");
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDBitVector implementation");
+        // a + b < c over 32 bits
+        long start = System.nanoTime();
+        ROBDD bdd = new ROBDD(0);
+        ROBDDBitVector[] v = variables(bdd,32,"a","b","c");
+        int root = v[0].add(v[1]).lessThan(v[2]);
+        System.out.println("a + b < c, 32 bits : " + bdd.nodeCount(root) + " nodes, "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+
+        // 3a - b == 7 over 4 bits, checked on every assignment
+        ROBDD small = new ROBDD(0);
+        ROBDDBitVector[] w = variables(small,4,"a","b");
+        int f = w[0].mulConst(3).sub(w[1]).eqConst(7);
+        int[][] T = small.getROBDDTable();
+        int solutions = 0, wrong = 0;
+        for(int a=0;a<16;a++){
+            for(int b=0;b<16;b++){
+                // Variables are a[0] b[0] a[1] b[1] ...
+                int u = f;
+                while(u > 1){
+                    int var = T[u][0] - 1;
+                    int value = (var % 2 == 0) ? a : b;
+                    u = T[u][1 + ((value >> (var/2)) & 1)];
+                }
+                if(u == 1) solutions++;
+                if((u == 1) != (((3*a - b) & 15) == 7)) wrong++;
+            }
+        }
+        System.out.println("3a - b == 7 over 4 bits : " + solutions
+                           + " solutions, " + wrong + " wrong");
+        System.out.println("a >> 1 <= a : "
+                           + (w[0].shiftRight(1).lessEqual(w[0]) == 1));
+    }
+}
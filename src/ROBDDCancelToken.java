@@ -0,0 +1,73 @@
+/* =========================================================================== *
+ * File : ROBDDCancelToken.java                                                *
+ * =========================================================================== *
+ * Class used to stop long running ROBDD operations. A token can be cancelled  *
+ * from any thread and can carry a deadline. Operations call poll() on every   *
+ * recursion step; the token only looks at the flag and the clock every        *
+ * checkInterval steps, and then throws ROBDDCancelledException.               *
+ * Prime Methods : cancel(), withTimeout(millis)                               *
+ *               : poll(), check()                                             *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ROBDDCancelToken{
+
+    public static final int DEFAULT_CHECK_INTERVAL = 1024;
+
+    private volatile boolean cancelled;
+    private final boolean hasDeadline;
+    private final long deadline;
+    private final int checkInterval;
+    private int steps;
+
+    // Constructor. A token without deadline, only stopped by cancel()
+    public ROBDDCancelToken(){
+        this(false,0,DEFAULT_CHECK_INTERVAL);
+    }
+
+    private ROBDDCancelToken(boolean hasDeadline,long deadline,int checkInterval){
+        if(checkInterval < 1)
+            throw new IllegalArgumentException("checkInterval < 1");
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+        this.checkInterval = checkInterval;
+    }
+
+    // withTimeout(millis) : Returns a token that expires after millis
+    public static ROBDDCancelToken withTimeout(long millis){
+        return withTimeout(millis,DEFAULT_CHECK_INTERVAL);
+    }
+
+    // withTimeout(millis,checkInterval) : Same, checking the clock every
+    // checkInterval steps
+    public static ROBDDCancelToken withTimeout(long millis,int checkInterval){
+        return new ROBDDCancelToken(true,System.nanoTime() + millis*1000000L,
+                                    checkInterval);
+    }
+
+    // cancel : Requests the operation using this token to stop
+    public void cancel(){
+        cancelled = true;
+    }
+
+    // isCancelled : Returns whether cancel() was called
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    // poll : Called by operations on every step, checks every checkInterval
+    public void poll(){
+        if(++steps < checkInterval) return;
+        steps = 0;
+        check();
+    }
+
+    // check : Throws ROBDDCancelledException if cancelled or expired
+    public void check(){
+        if(cancelled) throw new ROBDDCancelledException(false);
+        if(hasDeadline && System.nanoTime() - deadline >= 0)
+            throw new ROBDDCancelledException(true);
+    }
+}
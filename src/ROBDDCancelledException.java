@@ -0,0 +1,23 @@
+/* =========================================================================== *
+ * File : ROBDDCancelledException.java                                         *
+ * =========================================================================== *
+ * Exception thrown when an ROBDD operation is stopped by its ROBDDCancelToken.*
+ * The nodes built by the stopped operation have been removed again.           *
+ * =========================================================================== */
+
+public class ROBDDCancelledException extends RuntimeException{
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean timeout;
+
+    public ROBDDCancelledException(boolean timeout){
+        super(timeout ? "ROBDD operation timed out" : "ROBDD operation cancelled");
+        this.timeout = timeout;
+    }
+
+    // isTimeout : Returns whether the deadline passed, rather than cancel()
+    public boolean isTimeout(){
+        return timeout;
+    }
+}
@@ -0,0 +1,545 @@
+/* =========================================================================== *
+ * File : ROBDDCompiled.java                                                   *
+ * =========================================================================== *
+ * Class that compiles a frozen ROBDD into straight-line JVM bytecode. Every   *
+ * node becomes a test on the assignment followed by a branch, so evaluating   *
+ * the ROBDD is a walk through generated code instead of through the T table.  *
+ * The code is loaded as a hidden class and split into methods of at most      *
+ * CHUNK nodes so that every method stays small enough for the JIT.            *
+ * ROBDDs of more than COMPILE_LIMIT reachable nodes are not compiled and      *
+ * eval walks T instead : measured with random assignments, the generated code *
+ * is 1.5 to 2.5 times faster up to about 1000 nodes, but slower from about    *
+ * 2000 nodes on, where it outgrows the instruction cache.                     *
+ * Prime Methods : compile(ROBDD) / compile(ROBDD,root)                        *
+ *               : eval(assignment), isCompiled()                              *
+ * Limitations   : The ROBDD must not change after it has been compiled        *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+import java.lang.invoke.*;
+import java.util.function.Predicate;
+
+public class ROBDDCompiled{
+
+    // Nodes per generated method. Keeps every method below the JIT's
+    // huge method limit (8000 bytes) and all branch offsets within 16 bits.
+    private static final int CHUNK = 240;
+
+    // Largest number of reachable nodes that is compiled. Larger ROBDDs are
+    // evaluated by walking T, which is faster for them.
+    public static final int COMPILE_LIMIT = 1024;
+
+    private static final String CLASS_NAME = "ROBDDCompiledEvaluator";
+
+    private int[][] T;
+    private int root;
+    private Predicate<Object> evaluator;
+
+    // Constant pool of the class being generated
+    private ByteArrayBuilder pool;
+    private int poolCount;
+    private Map<String,Integer> poolIndex;
+
+    // Numbering of the nodes inside the generated code
+    private int[] chunkOf;
+    private int[] localOf;
+    private int[][] chunks;
+
+    // Getter-Setter Methods
+    // getChunkCount : Returns the number of generated methods holding nodes
+    public int getChunkCount(){
+        return chunks.length;
+    }
+
+    // isCompiled : Returns whether eval runs generated code, false if the
+    // ROBDD was above COMPILE_LIMIT
+    public boolean isCompiled(){
+        return evaluator != null;
+    }
+
+    // Public Interface
+    // compile(ROBDD) : Compiles the ROBDD rooted at its last node
+    public void compile(ROBDD u){
+        compile(u,u.getNodeCount() - 1);
+    }
+
+    // compile(ROBDD,root) : Compiles the ROBDD rooted at the given node, if
+    // at most COMPILE_LIMIT nodes are reachable from it
+    public void compile(ROBDD u,int root){
+        T = u.getROBDDTable();
+        this.root = root;
+        evaluator = null;
+        if(!number()) return;
+        byte[] classFile = generate();
+        try{
+            MethodHandles.Lookup lookup = MethodHandles.lookup()
+                                          .defineHiddenClass(classFile,true);
+            MethodHandle constructor = lookup.findConstructor(
+                lookup.lookupClass(),MethodType.methodType(void.class));
+            evaluator = (Predicate<Object>) constructor.invoke();
+        }catch(Throwable e){
+            throw new IllegalStateException("Unable to load compiled ROBDD",e);
+        }
+    }
+
+    // eval(assignment) : Evaluates the compiled ROBDD. assignment[i-1] holds
+    // the value (0 or 1) of variable i, as in ROBDDSATSolver.ANYSAT. Walks T
+    // if the ROBDD was not compiled
+    public boolean eval(int[] assignment){
+        if(evaluator == null) return evalInterpreted(assignment);
+        return evaluator.test(assignment);
+    }
+
+    // evalInterpreted(assignment) : Evaluates the ROBDD by walking T. Useful
+    // as a reference for the compiled version
+    public boolean evalInterpreted(int[] assignment){
+        int node = root;
+        while(node > 1){
+            if(assignment[T[node][0]-1] == 0) node = T[node][1];
+            else node = T[node][2];
+        }
+        return node == 1;
+    }
+
+    // Private Implementation
+    // number() : Collects the nodes reachable from root and splits them into
+    // chunks. Node indices are topological, so chunks are in index order.
+    // Returns false, numbering nothing, above COMPILE_LIMIT nodes
+    private boolean number(){
+        chunkOf = new int[T.length];
+        localOf = new int[T.length];
+        boolean[] reachable = new boolean[root + 1];
+        reachable[root] = true;
+        int count = 0;
+        for(int i=root;i>1;i--){
+            if(!reachable[i]) continue;
+            count++;
+            reachable[T[i][1]] = true;
+            reachable[T[i][2]] = true;
+        }
+        if(count > COMPILE_LIMIT){
+            chunks = new int[0][];
+            return false;
+        }
+        chunks = new int[(count + CHUNK - 1)/CHUNK][];
+        int k = 0;
+        int local = 0;
+        for(int i=root;i>1;i--){
+            if(!reachable[i]) continue;
+            if(local == 0)
+                chunks[k] = new int[Math.min(CHUNK,count - k*CHUNK)];
+            chunks[k][local] = i;
+            chunkOf[i] = k;
+            localOf[i] = local;
+            if(++local == CHUNK){
+                local = 0;
+                k++;
+            }
+        }        return true;
+    }
+
+    /* Class File Generation */
+    // generate() : Returns the class file of the evaluator. Version 49 is
+    // used so that no stack map frames have to be emitted.
+    private byte[] generate(){
+        pool = new ByteArrayBuilder();
+        poolCount = 1;
+        poolIndex = new HashMap<String,Integer>();
+
+        int thisClass = classRef(CLASS_NAME);
+        int superClass = classRef("java/lang/Object");
+        int predicate = classRef("java/util/function/Predicate");
+        int code = utf8("Code");
+
+        ByteArrayBuilder methods = new ByteArrayBuilder();
+        methods.u2(2 + chunks.length);
+
+        // Constructor
+        ByteArrayBuilder init = new ByteArrayBuilder();
+        init.u1(0x2a);                                        // aload_0
+        init.u1(0xb7);                                        // invokespecial
+        init.u2(methodRef("java/lang/Object","<init>","()V"));
+        init.u1(0xb1);                                        // return
+        method(methods,0x0001,"<init>","()V",code,1,1,init.toByteArray());
+
+        // test(Object) : entry point, jumps to the chunk holding the root
+        ByteArrayBuilder test = new ByteArrayBuilder();
+        if(root <= 1){
+            test.u1(root == 1 ? 0x04 : 0x03);                 // iconst_x
+        }else{
+            test.u1(0x2b);                                    // aload_1
+            test.u1(0xc0);                                    // checkcast
+            test.u2(classRef("[I"));
+            push(test,localOf[root]);
+            test.u1(0xb8);                                    // invokestatic
+            test.u2(methodRef(CLASS_NAME,"c" + chunkOf[root],"([II)Z"));
+        }
+        test.u1(0xac);                                        // ireturn
+        method(methods,0x0001,"test","(Ljava/lang/Object;)Z",code,3,2,
+               test.toByteArray());
+
+        for(int k=0;k<chunks.length;k++){
+            method(methods,0x000a,"c" + k,"([II)Z",code,3,2,chunk(k));
+        }
+
+        ByteArrayBuilder out = new ByteArrayBuilder();
+        out.u4(0xcafebabe);
+        out.u2(0);
+        out.u2(49);
+        out.u2(poolCount);
+        out.bytes(pool.toByteArray());
+        out.u2(0x0031);                            // public final super
+        out.u2(thisClass);
+        out.u2(superClass);
+        out.u2(1);
+        out.u2(predicate);
+        out.u2(0);                                 // fields
+        out.bytes(methods.toByteArray());
+        out.u2(0);                                 // attributes
+        return out.toByteArray();
+    }
+
+    // chunk(k) : Generates the code of chunk k. The second argument selects
+    // the node to start at through a tableswitch.
+    private byte[] chunk(int k){
+        int[] nodes = chunks[k];
+        int m = nodes.length;
+        // Layout pass : start offset of every node and of the terminals
+        int switchEnd = 16 + 4*m;
+        int[] start = new int[m];
+        int pc = switchEnd;
+        for(int j=0;j<m;j++){
+            start[j] = pc;
+            pc += nodeSize(k,nodes[j]);
+        }
+        int false0 = pc;
+        int true1 = pc + 2;
+
+        ByteArrayBuilder b = new ByteArrayBuilder();
+        b.u1(0x1b);                                           // iload_1
+        b.u1(0xaa);                                           // tableswitch
+        b.u1(0);
+        b.u1(0);
+        b.u4(false0 - 1);
+        b.u4(0);
+        b.u4(m - 1);
+        for(int j=0;j<m;j++) b.u4(start[j] - 1);
+
+        for(int j=0;j<m;j++){
+            int node = nodes[j];
+            int low = T[node][1];
+            int high = T[node][2];
+            b.u1(0x2a);                                       // aload_0
+            push(b,T[node][0] - 1);
+            b.u1(0x2e);                                       // iaload
+            int ifeq = b.size();
+            // Size of the fall-through (high) branch decides the stub offset
+            int highSize = branchSize(k,high);
+            int lowTarget;
+            if(low <= 1) lowTarget = (low == 1) ? true1 : false0;
+            else if(chunkOf[low] == k) lowTarget = start[localOf[low]];
+            else lowTarget = ifeq + 3 + highSize;
+            b.u1(0x99);                                       // ifeq
+            b.u2(lowTarget - ifeq);
+            branch(b,k,high,start,false0,true1);
+            if(low > 1 && chunkOf[low] != k) branch(b,k,low,start,false0,true1);
+        }
+        b.u1(0x03);                                           // iconst_0
+        b.u1(0xac);                                           // ireturn
+        b.u1(0x04);                                           // iconst_1
+        b.u1(0xac);                                           // ireturn
+        return b.toByteArray();
+    }
+
+    // branch(...) : Emits the code that continues evaluation at node target
+    private void branch(ByteArrayBuilder b,int k,int target,int[] start,
+                        int false0,int true1){
+        int pc = b.size();
+        if(target <= 1){
+            b.u1(0xa7);                                       // goto
+            b.u2((target == 1 ? true1 : false0) - pc);
+        }else if(chunkOf[target] == k){
+            b.u1(0xa7);                                       // goto
+            b.u2(start[localOf[target]] - pc);
+        }else{
+            b.u1(0x2a);                                       // aload_0
+            push(b,localOf[target]);
+            b.u1(0xb8);                                       // invokestatic
+            b.u2(methodRef(CLASS_NAME,"c" + chunkOf[target],"([II)Z"));
+            b.u1(0xac);                                       // ireturn
+        }
+    }
+
+    // nodeSize(k,node) : Number of bytes generated for node in chunk k
+    private int nodeSize(int k,int node){
+        int low = T[node][1];
+        int size = 1 + pushSize(T[node][0] - 1) + 1 + 3
+                 + branchSize(k,T[node][2]);
+        if(low > 1 && chunkOf[low] != k) size += branchSize(k,low);
+        return size;
+    }
+
+    // branchSize(k,target) : Number of bytes generated by branch(...)
+    private int branchSize(int k,int target){
+        if(target <= 1 || chunkOf[target] == k) return 3;
+        return 1 + pushSize(localOf[target]) + 3 + 1;
+    }
+
+    // push(b,value) : Emits the shortest instruction pushing an int constant
+    private void push(ByteArrayBuilder b,int value){
+        if(value >= -1 && value <= 5){
+            b.u1(0x03 + value);                               // iconst_x
+        }else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE){
+            b.u1(0x10);                                       // bipush
+            b.u1(value);
+        }else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE){
+            b.u1(0x11);                                       // sipush
+            b.u2(value);
+        }else{
+            b.u1(0x13);                                       // ldc_w
+            b.u2(intConstant(value));
+        }
+    }
+
+    private int pushSize(int value){
+        if(value >= -1 && value <= 5) return 1;
+        if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) return 2;
+        return 3;
+    }
+
+    // method(...) : Appends a method_info structure with a Code attribute
+    private void method(ByteArrayBuilder methods,int access,String name,
+                        String desc,int code,int maxStack,int maxLocals,
+                        byte[] bytecode){
+        methods.u2(access);
+        methods.u2(utf8(name));
+        methods.u2(utf8(desc));
+        methods.u2(1);
+        methods.u2(code);
+        methods.u4(12 + bytecode.length);
+        methods.u2(maxStack);
+        methods.u2(maxLocals);
+        methods.u4(bytecode.length);
+        methods.bytes(bytecode);
+        methods.u2(0);                             // exception table
+        methods.u2(0);                             // attributes
+    }
+
+    /* Supporting Operations on the constant pool */
+    private int utf8(String s){
+        String key = "U" + s;
+        Integer index = poolIndex.get(key);
+        if(index != null) return index;
+        pool.u1(1);
+        pool.utf(s);
+        return entry(key);
+    }
+
+    private int classRef(String name){
+        String key = "C" + name;
+        Integer index = poolIndex.get(key);
+        if(index != null) return index;
+        int nameIndex = utf8(name);
+        pool.u1(7);
+        pool.u2(nameIndex);
+        return entry(key);
+    }
+
+    private int intConstant(int value){
+        String key = "I" + value;
+        Integer index = poolIndex.get(key);
+        if(index != null) return index;
+        pool.u1(3);
+        pool.u4(value);
+        return entry(key);
+    }
+
+    private int methodRef(String owner,String name,String desc){
+        String key = "M" + owner + "." + name + desc;
+        Integer index = poolIndex.get(key);
+        if(index != null) return index;
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descIndex = utf8(desc);
+        pool.u1(12);
+        pool.u2(nameIndex);
+        pool.u2(descIndex);
+        int nameAndType = entry("N" + name + desc);
+        pool.u1(10);
+        pool.u2(ownerIndex);
+        pool.u2(nameAndType);
+        return entry(key);
+    }
+
+    private int entry(String key){
+        int index = poolCount++;
+        poolIndex.put(key,index);
+        return index;
+    }
+
+    // Growable big-endian byte buffer used to write the class file
+    private static class ByteArrayBuilder{
+        private byte[] buf = new byte[256];
+        private int size;
+
+        int size(){
+            return size;
+        }
+
+        void u1(int v){
+            if(size == buf.length) buf = Arrays.copyOf(buf,2*size);
+            buf[size++] = (byte) v;
+        }
+
+        void u2(int v){
+            u1(v >>> 8);
+            u1(v);
+        }
+
+        void u4(int v){
+            u2(v >>> 16);
+            u2(v);
+        }
+
+        void bytes(byte[] b){
+            for(int i=0;i<b.length;i++) u1(b[i]);
+        }
+
+        void utf(String s){
+            byte[] b = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            u2(b.length);
+            bytes(b);
+        }
+
+        byte[] toByteArray(){
+            return Arrays.copyOf(buf,size);
+        }
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDCompiled implementation");
+        ROBDD test = new ROBDD(4);
+        String boolExp = "NOT(x1&&NOT(x2) || NOT(x1)&&x2)" +
+                         "&& NOT(x3&&NOT(x4) || NOT(x3)&&x4)";
+        test.build(boolExp,1);
+        ROBDDCompiled compiled = new ROBDDCompiled();
+        compiled.compile(test);
+
+        // Compare against the interpreted walk for every assignment
+        int[] assignment = new int[4];
+        int mismatches = 0;
+        for(int a=0;a<16;a++){
+            for(int i=0;i<4;i++) assignment[i] = (a >> i) & 1;
+            if(compiled.eval(assignment) != compiled.evalInterpreted(assignment))
+                mismatches++;
+        }
+        System.out.println("Mismatches : " + mismatches);
+
+        // A larger ROBDD (x1 xor x2 xor ... xor xn), spread over chunks
+        int n = 400;
+        ROBDD parity = new ROBDD(n);
+        int even = 0;
+        int odd = 1;
+        for(int i=n;i>=1;i--){
+            int e = parity.mk(i,even,odd);
+            int o = parity.mk(i,odd,even);
+            even = e;
+            odd = o;
+        }
+        compiled.compile(parity,odd);
+        Random random = new Random(42);
+        int[][] inputs = randomInputs(random,1024,n);
+        System.out.println("Mismatches (" + parity.getNodeCount() + " nodes, "
+                           + compiled.getChunkCount() + " chunks) : "
+                           + mismatches(compiled,inputs));
+        benchmark(compiled,inputs,200);
+
+        // x1 y1 + ... + xm ym with all the x above all the y : 2^(m+1)
+        // nodes. m = 8 stays within COMPILE_LIMIT, m = 15 is above it and is
+        // evaluated by walking T
+        for(int m : new int[]{8,15}) benchmarkPairs(compiled,random,m);
+    }
+
+    // benchmarkPairs(compiled,random,m) : Compiles x1 y1 + ... + xm ym and
+    // compares both evaluations on random assignments
+    private static void benchmarkPairs(ROBDDCompiled compiled,Random random,int m){
+        ROBDD pairs = new ROBDD(2*m);
+        int f = pairsFrom(pairs,m,1,0,new HashMap<Long,Integer>());
+        long start = System.nanoTime();
+        compiled.compile(pairs,f);
+        long millis = (System.nanoTime() - start)/1000000;
+        int[][] inputs = randomInputs(random,1 << 16,2*m);
+        System.out.println("Mismatches (" + pairs.getNodeCount() + " nodes, "
+                           + (compiled.isCompiled() ? compiled.getChunkCount()
+                              + " chunks, compiled in " + millis + " ms"
+                              : "not compiled") + ") : "
+                           + mismatches(compiled,inputs));
+        benchmark(compiled,inputs,20);
+    }
+
+    // pairsFrom(bdd,m,i,set,memo) : Builds x1 y1 + ... + xm ym from variable
+    // i down, set holding the x already set to 1. Variables 1..m are the x,
+    // m+1..2m the y. Every node made is reachable from the root
+    private static int pairsFrom(ROBDD bdd,int m,int i,int set,
+                                 HashMap<Long,Integer> memo){
+        if(i > 2*m) return 0;
+        long key = ((long) i << 32) | set;
+        Integer done = memo.get(key);
+        if(done != null) return done;
+        int u;
+        if(i <= m){
+            u = bdd.mk(i,pairsFrom(bdd,m,i+1,set,memo),
+                         pairsFrom(bdd,m,i+1,set | (1 << (i-1)),memo));
+        }else if((set & (1 << (i-m-1))) != 0){
+            u = bdd.mk(i,pairsFrom(bdd,m,i+1,set,memo),1);
+        }else{
+            u = pairsFrom(bdd,m,i+1,set,memo);
+        }
+        memo.put(key,u);
+        return u;
+    }
+
+    // randomInputs(random,count,n) : Returns count random assignments to n
+    // variables
+    private static int[][] randomInputs(Random random,int count,int n){
+        int[][] inputs = new int[count][n];
+        for(int j=0;j<count;j++)
+            for(int i=0;i<n;i++) inputs[j][i] = random.nextInt(2);
+        return inputs;
+    }
+
+    // mismatches(compiled,inputs) : Number of inputs on which the compiled
+    // and the interpreted evaluation differ
+    private static int mismatches(ROBDDCompiled compiled,int[][] inputs){
+        int count = 0;
+        for(int j=0;j<inputs.length;j++)
+            if(compiled.eval(inputs[j]) != compiled.evalInterpreted(inputs[j]))
+                count++;
+        return count;
+    }
+
+    // benchmark(compiled,inputs,repeat) : Times both evaluations over the
+    // inputs, repeat times each, in three rounds so the JIT warms up
+    private static void benchmark(ROBDDCompiled compiled,int[][] inputs,int repeat){
+        for(int round=0;round<3;round++){
+            long start = System.nanoTime();
+            int hits = 0;
+            for(int r=0;r<repeat;r++)
+                for(int j=0;j<inputs.length;j++)
+                    if(compiled.evalInterpreted(inputs[j])) hits++;
+            long interpreted = System.nanoTime() - start;
+            start = System.nanoTime();
+            for(int r=0;r<repeat;r++)
+                for(int j=0;j<inputs.length;j++)
+                    if(compiled.eval(inputs[j])) hits++;
+            long compiledTime = System.nanoTime() - start;
+            System.out.println("Interpreted : " + interpreted/1000000 + " ms, "
+                             + "Compiled : " + compiledTime/1000000 + " ms ("
+                             + hits + ")");
+        }
+    }
+}
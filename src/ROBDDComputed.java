@@ -5,7 +5,7 @@
  * two given ROBDDs.                                                           *
  * Prime Operations : apply(operation,first ROBDD, second ROBDD)               *
  *                  : print()                                                  *
- * Limitations      : G is 2D Array and not hash Table                         *
+ * Limitations      : G is direct mapped, bounded by the config's cacheSize    *
  * =========================================================================== */  
 
 import java.util.*;
@@ -18,49 +18,59 @@ public class ROBDDComputed{
     private int[] H;
     private int nodeCount;
     private int capacity;
-    private int[][] G;
+    private double growthFactor;
+    private int nodeLimit;
+    private int cacheSize;
+    private long[] GKey;
+    private int[] G;
     private int[][] T1;
     private int[][] T2;
     private int T1NodeCount;
     private int T2NodeCount;
     private String op;
+    // Token of the running apply, null if it cannot be cancelled
+    private ROBDDCancelToken cancelToken;
     
-    // Constructor. Equivalent to the init(T),init(H) method in Notes
+    // Constructor. Equivalent to the init(T),init(H) method in Notes 
     // Here n is the number of variables.
     public ROBDDComputed(int n){
+        this(n,ROBDDConfig.DEFAULT);
+    }
+    
+    // Constructor. Sizes and grows the tables as given by config
+    public ROBDDComputed(int n,ROBDDConfig config){
         // Initializing T to contain 0 and 1
         nodeCount = 0;
-        capacity = n;
-        T = new int[capacity][3];
+        capacity = Math.max(2,Math.min(config.getInitialNodeCapacity(),
+                                       config.getNodeLimit()));
+        growthFactor = config.getGrowthFactor();
+        nodeLimit = Math.min(config.getNodeLimit(),ROBDDNodeStore.MAX_NODES);
+        cacheSize = config.getCacheSize();
+        T = new int[capacity][];
         
         // Adding 0 and 1 node. -1 indicates NULL.
-        T[0][0] = n+1;
-        T[0][1] = -1;
-        T[0][2] = -1;
-        T[1][0] = n+1;
-        T[1][1] = -1;
-        T[1][2] = -1;
+        T[0] = new int[]{n+1,-1,-1};
+        T[1] = new int[]{n+1,-1,-1};
         nodeCount += 2;
         
-        // Initializing H
-        H = new int[capacity];
-        for(int i=0;i<capacity;i++)
-            H[i] = -1;
+        // Initializing H. Open addressing, the size is a power of 2
+        H = new int[config.getUniqueTableSize()];
+        for(int i=0;i<H.length;i++)
+            H[i] = -1; 
     }
     
     // Returns the node which is being made.
     public int mk(int i,int l,int h){
         // Return in case the node is redundant
         if(l == h){
-            return l;
-        }else if(member(i,l,h)){
-            return lookup(i,l,h);
-        }else{
-            int node = add(i,l,h);
+            return l;            
+        }
+        int node = lookup(i,l,h);
+        if(node == -1){ 
+            node = add(i,l,h);
             insert(i,l,h,node);
-            return node;
         }
-            
+        return node;
     }
     
     // Prints the table T and H. Useful for debugging
@@ -84,22 +94,53 @@ public class ROBDDComputed{
         T2 = u2.getROBDDTable();
         T1NodeCount = u1.getNodeCount();
         T2NodeCount = u2.getNodeCount();
-        G = new int[T1NodeCount][T2NodeCount];
+        // G is direct mapped on l*T2NodeCount + h. It only loses entries
+        // when it is smaller than T1NodeCount*T2NodeCount
+        long pairs = (long) T1NodeCount*T2NodeCount;
+        int size = (int) Math.min(cacheSize,Long.highestOneBit(pairs)*2);
+        GKey = new long[size];
+        G = new int[size];
         this.op = op;
-        for(int i=0;i<T1NodeCount;i++){
-            for(int j=0;j<T2NodeCount;j++){
-                G[i][j] = -1;
-            }
+        for(int i=0;i<size;i++){
+            GKey[i] = -1;
         }
                 
         app(T1NodeCount-1,T2NodeCount-1);        
     }
     
+    // apply(op,u1,u2,token) : Same as apply(op,u1,u2), stopping with
+    // ROBDDCancelledException once token is cancelled or expires. If the
+    // operation fails, the nodes it added are removed again.
+    public void apply(String op,ROBDD u1,ROBDD u2,ROBDDCancelToken token){
+        int rollbackTo = nodeCount;
+        cancelToken = token;
+        try{
+            token.check();
+            apply(op,u1,u2);
+        }catch(RuntimeException e){
+            rollback(rollbackTo);
+            throw e;
+        }finally{
+            cancelToken = null;
+        }
+    }
+    
+    // rollback(rollbackTo) : Removes the nodes from rollbackTo on, and
+    // rebuilds H
+    private void rollback(int rollbackTo){
+        for(int j=rollbackTo;j<nodeCount;j++) T[j] = null;
+        nodeCount = rollbackTo;
+        renewHashTable(H.length);
+    }
+    
     // Private method that recursively computes the ROBDD
     private int app(int l,int h){
+        if(cancelToken != null) cancelToken.poll();
         int u;
-        if(G[l][h] != -1){ 
-            return G[l][h];
+        long key = (long) l*T2NodeCount + h;
+        int slot = (int) (key & (G.length - 1));
+        if(GKey[slot] == key){ 
+            return G[slot];
         }else if( ((l==0)||(l==1)) && ((h==0)||(h==1)) ) {
             u = eval(String.valueOf(l) + op + String.valueOf(h))?1:0;
         }else if(T1[l][0] == T2[h][0]){
@@ -109,87 +150,73 @@ public class ROBDDComputed{
         }else{
             u = mk(T1[h][0], app(l,T2[h][1]), app(l,T2[h][2]) );
         }
-        G[l][h] = u;
+        GKey[slot] = key;
+        G[slot] = u;
         return u;
     }
     
     /* Supporting Operations on T*/
     // add(i,l,h) : Adds and returns a new node with var(u) = i, var(l) = l ...
-    // Takes O(1) time
+    // Takes O(1) time. Throws ROBDDNodeLimitException if T is at its limit
     private int add(int i,int l,int h){
+        if(nodeCount == nodeLimit) throw new ROBDDNodeLimitException(nodeLimit);
         int curNodeIndex = nodeCount++;
         if(curNodeIndex == capacity) expandArray();
-        T[curNodeIndex][0] = i;
-        T[curNodeIndex][1] = l;
-        T[curNodeIndex][2] = h;
+        T[curNodeIndex] = new int[]{i,l,h};
         return curNodeIndex;
     }
- 
-    /* Supporint Opeartions on H */
-    // member(i,l,h) : Returns if node with attributes is already in ROBDD.
-    // Takes O(1) time
-    private boolean member(int i, int l, int h){
-        int hashCode = generateHash(i,l,h);
-        // Not present in extended capacity
-        if(hashCode>(H.length-1)) return false;
-        // Not present in current capacity
-        return H[hashCode] != -1 ;
-    }
- 
-    // lookup(i,l,h) : Returns the node with attributes in ROBDD
-    // Takes O(1) time
+    
+    /* Supporting Operations on H */
+    // lookup(i,l,h) : Returns the node with attributes in ROBDD, -1 if absent.
+    // Takes O(1) expected time
     private int lookup(int i,int l,int h){
-        int hashCode = generateHash(i,l,h);
-        return H[hashCode];
+        int mask = H.length - 1;
+        for(int slot=generateHash(i,l,h) & mask;H[slot]!=-1;slot=(slot+1) & mask){
+            int node = H[slot];
+            if(T[node][0] == i && T[node][1] == l && T[node][2] == h)
+                return node;
+        }
+        return -1;
     }
  
-    // insert(i,l,h) : Inserts node with attributes i,l,h,node in Hash Table
+    // insert(i,l,h) : Inserts node with attributes i,l,h,node into Hash Table
     private void insert(int i,int l,int h,int node){
-        int hashCode = generateHash(i,l,h);
-        if(hashCode>(H.length+1)) renewHashTable(hashCode);
-        if(H[hashCode] != -1) renewHashTable(hashCode);
-        H[hashCode] = node;
-        return;
+        // Keep the load factor of H below 1/2. Renewing also inserts node
+        if(2L*(nodeCount - 2) > H.length){
+            renewHashTable(2*H.length);
+            return;
+        }
+        int mask = H.length - 1;
+        int slot = generateHash(i,l,h) & mask;
+        while(H[slot] != -1) slot = (slot+1) & mask;
+        H[slot] = node;
     }
     
+    // expandArray : Grows T by growthFactor, without going over nodeLimit.
+    // Only the row references are copied.
     private void expandArray(){
-        capacity *= 2;
-        int[][] temp = new int[capacity][3];
-        for(int i=0;i<T.length;i++){
-            temp[i][0] = T[i][0];
-            temp[i][1] = T[i][1];
-            temp[i][2] = T[i][2];
-        }
-        T = temp;
+        long grown = (long) (capacity*growthFactor);
+        capacity = (int) Math.max(capacity + 1,Math.min(grown,nodeLimit));
+        T = Arrays.copyOf(T,capacity);
     }
    
     // Private method to generate a HashCode
     private int generateHash(int i,int l,int h){
-        int hashCode = (pair(i,pair(l,h)));
-        return hashCode;
-    }
-   
-    // pair(i,j) useful function for generation of hash code
-    private int pair(int i,int j){
-        return (((i+j)*(i+j+1))/2 + i);
+        int hashCode = i*0x9E3779B1 + l*0x85EBCA77 + h*0xC2B2AE3D;
+        return hashCode ^ (hashCode >>> 15);
     }
     
-    // renewing hash table in case of fulfilled capacity
-    private void renewHashTable(int hashCode){
-        int newSize = hashCode + 1;
-        int[] newH= new int[newSize];
-        for(int j=0;j<newSize;j++){
-            newH[j] = -1;
-        }
+    // renewing hash table with the given size, rehashing every node
+    private void renewHashTable(int newSize){
+        int[] newH = new int[newSize];
+        Arrays.fill(newH,-1);
+        int mask = newSize - 1;
         for(int j=2;j<nodeCount;j++){
-            int i = T[j][0];
-            int l = T[j][1];
-            int h = T[j][2];
-            int hashCodeCur = generateHash(i,l,h);
-            newH[hashCodeCur] = j;
+            int slot = generateHash(T[j][0],T[j][1],T[j][2]) & mask;
+            while(newH[slot] != -1) slot = (slot+1) & mask;
+            newH[slot] = j;
         }
         H = newH;
-        return;
     }
  
     // Evaluates boolean expressions passed in as strings
@@ -235,6 +262,15 @@ public class ROBDDComputed{
         ROBDDComputed result = new ROBDDComputed(5);
         result.apply("&&",u1,u2);
         result.print();
+        
+        ROBDDCancelToken token = new ROBDDCancelToken();
+        token.cancel();
+        ROBDDComputed cancelled = new ROBDDComputed(5);
+        try{
+            cancelled.apply("&&",u1,u2,token);
+        }catch(ROBDDCancelledException e){
+            System.out.println(e.getMessage());
+        }
               
     }
 }
@@ -0,0 +1,138 @@
+/* =========================================================================== *
+ * File : ROBDDConfig.java                                                     *
+ * =========================================================================== *
+ * Class holding the sizing and growth policy of the ROBDD tables. Instances   *
+ * are created through ROBDDConfig.Builder and passed to the constructors of   *
+ * ROBDD, ROBDDComputed, ROBDDRestricted, ROBDDSATSolver, ZDD, ADD,            *
+ * ROBDDHeapStore and ROBDDOffHeapStore.                                       *
+ * Prime Methods : new ROBDDConfig.Builder()...build()                         *
+ *               : getNodeLimit()                                              *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ROBDDConfig{
+
+    // Estimated heap bytes per node : the int[3] row of T, its reference in
+    // T and two slots of H with their hashes (H is kept at most half full)
+    public static final int BYTES_PER_NODE = 56;
+
+    // Configuration used by the constructors taking only n
+    public static final ROBDDConfig DEFAULT = new Builder().build();
+
+    private final int initialNodeCapacity;
+    private final int uniqueTableSize;
+    private final int cacheSize;
+    private final long maxMemory;
+    private final double growthFactor;
+    private final int maxNodes;
+
+    private ROBDDConfig(Builder builder){
+        initialNodeCapacity = builder.initialNodeCapacity;
+        uniqueTableSize = builder.uniqueTableSize;
+        cacheSize = builder.cacheSize;
+        maxMemory = builder.maxMemory;
+        growthFactor = builder.growthFactor;
+        maxNodes = builder.maxNodes;
+    }
+
+    // Getter-Setter Methods
+    // getInitialNodeCapacity : Rows allocated for T on construction
+    public int getInitialNodeCapacity(){
+        return initialNodeCapacity;
+    }
+
+    // getUniqueTableSize : Initial number of slots of H, a power of 2
+    public int getUniqueTableSize(){
+        return uniqueTableSize;
+    }
+
+    // getCacheSize : Number of entries of the computed table, a power of 2
+    public int getCacheSize(){
+        return cacheSize;
+    }
+
+    // getMaxMemory : Bytes the node tables may take, estimated with
+    // BYTES_PER_NODE for every store
+    public long getMaxMemory(){
+        return maxMemory;
+    }
+
+    // getGrowthFactor : Factor by which T grows once full
+    public double getGrowthFactor(){
+        return growthFactor;
+    }
+
+    // getMaxNodes : Hard limit on the number of nodes
+    public int getMaxNodes(){
+        return maxNodes;
+    }
+
+    // getNodeLimit : Number of nodes allowed by both maxNodes and maxMemory
+    public int getNodeLimit(){
+        return (int) Math.min(maxNodes,maxMemory/BYTES_PER_NODE);
+    }
+
+    // Builder of ROBDDConfig. Every setting has a default.
+    public static class Builder{
+        private int initialNodeCapacity = 1024;
+        private int uniqueTableSize = 2048;
+        private int cacheSize = 1 << 16;
+        private long maxMemory = Long.MAX_VALUE;
+        private double growthFactor = 2.0;
+        private int maxNodes = Integer.MAX_VALUE;
+
+        public Builder initialNodeCapacity(int initialNodeCapacity){
+            if(initialNodeCapacity < 2)
+                throw new IllegalArgumentException("initialNodeCapacity < 2");
+            this.initialNodeCapacity = initialNodeCapacity;
+            return this;
+        }
+
+        // uniqueTableSize : Rounded up to a power of 2
+        public Builder uniqueTableSize(int uniqueTableSize){
+            if(uniqueTableSize < 1 || uniqueTableSize > (1 << 30))
+                throw new IllegalArgumentException("uniqueTableSize out of range");
+            this.uniqueTableSize = powerOfTwo(uniqueTableSize);
+            return this;
+        }
+
+        // cacheSize : Rounded up to a power of 2
+        public Builder cacheSize(int cacheSize){
+            if(cacheSize < 1 || cacheSize > (1 << 30))
+                throw new IllegalArgumentException("cacheSize out of range");
+            this.cacheSize = powerOfTwo(cacheSize);
+            return this;
+        }
+
+        public Builder maxMemory(long maxMemory){
+            if(maxMemory < 2*BYTES_PER_NODE)
+                throw new IllegalArgumentException("maxMemory too small");
+            this.maxMemory = maxMemory;
+            return this;
+        }
+
+        public Builder growthFactor(double growthFactor){
+            if(!(growthFactor > 1.0))
+                throw new IllegalArgumentException("growthFactor <= 1");
+            this.growthFactor = growthFactor;
+            return this;
+        }
+
+        public Builder maxNodes(int maxNodes){
+            if(maxNodes < 2)
+                throw new IllegalArgumentException("maxNodes < 2");
+            this.maxNodes = maxNodes;
+            return this;
+        }
+
+        public ROBDDConfig build(){
+            return new ROBDDConfig(this);
+        }
+
+        private static int powerOfTwo(int n){
+            return (n == 1) ? 1 : Integer.highestOneBit(n - 1) << 1;
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/* =========================================================================== *
+ * File : ROBDDExpression.java                                                 *
+ * =========================================================================== *
+ * Class that parses a Boolean expression into a hash-consed DAG, to be built  *
+ * into an ROBDD with ROBDD.build(ROBDDExpression). Equal subexpressions are   *
+ * interned into a single node, so each is built only once. Nodes are created  *
+ * after their operands, hence node indices are in topological order.          *
+ * Syntax, loosest binding first :                                             *
+ *     a <-> b     a -> b (right associative)     a | b     a ^ b     a & b    *
+ *     !a     (a)     0  1  true  false     names like x1, bus.ack[3]          *
+ * && and || are accepted for & and |. The parser keeps operators and open     *
+ * parentheses on explicit stacks, so any nesting depth that fits in memory    *
+ * is accepted.                                                                *
+ * Prime Methods : parse(booleanExp)                                           *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ROBDDExpression{
+
+    // Node kinds. CONST holds its value and VAR its variable id in left
+    public static final int CONST = 0;
+    public static final int VAR = 1;
+    public static final int NOT = 2;
+    public static final int AND = 3;
+    public static final int OR = 4;
+    public static final int XOR = 5;
+    public static final int IMP = 6;
+    public static final int BIIMP = 7;
+    // Open parenthesis on the operator stack of the parser
+    private static final int PAREN = 8;
+    // PRECEDENCE[op] : Binding of the binary operators, loosest first. IMP
+    // is right associative, the others left associative
+    private static final int[] PRECEDENCE = {0,0,0,5,3,4,2,1};
+
+    // The DAG : node i is op[i](left[i],right[i])
+    private int[] op = new int[64];
+    private int[] left = new int[64];
+    private int[] right = new int[64];
+    private int nodeCount;
+    private int root;
+    // Intern table, open addressing on the packed (op,left,right) key
+    private long[] internKey = new long[128];
+    private int[] internNode = new int[128];
+
+    // Variables, numbered from 0 in order of first appearance
+    private ArrayList<String> names = new ArrayList<String>();
+    private HashMap<String,Integer> ids = new HashMap<String,Integer>();
+
+    // Parser state
+    private char[] text;
+    private int pos;
+
+    private ROBDDExpression(){
+    }
+
+    // Public Interface
+    // parse(booleanExp) : Parses the expression. Throws
+    // IllegalArgumentException on syntax errors.
+    public static ROBDDExpression parse(String exp){
+        ROBDDExpression e = new ROBDDExpression();
+        e.text = exp.toCharArray();
+        e.pos = 0;
+        e.root = e.parseExpression();
+        e.skipSpaces();
+        if(e.pos < e.text.length) e.error("Unexpected '" + e.text[e.pos] + "'");
+        e.text = null;
+        return e;
+    }
+
+    // Getter-Setter Methods
+    public int getRoot(){
+        return root;
+    }
+
+    public int getNodeCount(){
+        return nodeCount;
+    }
+
+    public int getOp(int node){
+        return op[node];
+    }
+
+    public int getLeft(int node){
+        return left[node];
+    }
+
+    public int getRight(int node){
+        return right[node];
+    }
+
+    // getVariableCount : Returns the number of distinct variables
+    public int getVariableCount(){
+        return names.size();
+    }
+
+    // getVariableName(id) : Returns the name of variable id
+    public String getVariableName(int id){
+        return names.get(id);
+    }
+
+    // getVariableId(name) : Returns the id of the named variable, -1 if the
+    // expression does not use it
+    public int getVariableId(String name){
+        Integer id = ids.get(name);
+        return (id == null) ? -1 : id;
+    }
+
+    // Private Implementation
+    /* Parser : operator precedence with explicit stacks, so that the
+       nesting depth is only bounded by memory */
+    // parseExpression : Parses the text from pos up to the first character
+    // that cannot continue the expression, and returns its node
+    private int parseExpression(){
+        // Operands, and operators with PAREN and NOT marking open
+        // parentheses and pending negations
+        int[] operands = new int[16];
+        int operandCount = 0;
+        int[] operators = new int[16];
+        int operatorCount = 0;
+        while(true){
+            // An operand : negations and parentheses, then a primary
+            skipSpaces();
+            if(pos < text.length && (text[pos] == '!' || text[pos] == '(')){
+                if(operatorCount == operators.length)
+                    operators = Arrays.copyOf(operators,2*operatorCount);
+                operators[operatorCount++] = (text[pos++] == '!') ? NOT : PAREN;
+                continue;
+            }
+            int node = parsePrimary();
+            // Closing parentheses, each ending the operand it opened
+            while(true){
+                int negations = 0;
+                while(operatorCount > 0 && operators[operatorCount-1] == NOT){
+                    operatorCount--;
+                    negations++;
+                }
+                if(negations % 2 == 1) node = node(NOT,node,-1);
+                if(!accept(")")) break;
+                while(operatorCount > 0 && operators[operatorCount-1] != PAREN){
+                    node = node(operators[--operatorCount],operands[--operandCount],node);
+                }
+                if(operatorCount == 0){
+                    pos--;
+                    error("Unexpected ')'");
+                }
+                operatorCount--;
+            }
+            // A binary operator, or the end of the expression
+            int o = binaryOperator();
+            int level = (o == -1) ? 0 : PRECEDENCE[o];
+            while(operatorCount > 0 && operators[operatorCount-1] != PAREN
+                  && (PRECEDENCE[operators[operatorCount-1]] > level
+                      || PRECEDENCE[operators[operatorCount-1]] == level && o != IMP)){
+                node = node(operators[--operatorCount],operands[--operandCount],node);
+            }
+            if(o == -1){
+                if(operatorCount > 0) error("Expected ')'");
+                return node;
+            }
+            if(operandCount == operands.length)
+                operands = Arrays.copyOf(operands,2*operandCount);
+            operands[operandCount++] = node;
+            if(operatorCount == operators.length)
+                operators = Arrays.copyOf(operators,2*operatorCount);
+            operators[operatorCount++] = o;
+        }
+    }
+
+    // binaryOperator : Reads and returns the binary operator at pos, -1 if
+    // there is none
+    private int binaryOperator(){
+        if(accept("<->")) return BIIMP;
+        if(accept("->")) return IMP;
+        if(accept("||") || accept("|")) return OR;
+        if(accept("^")) return XOR;
+        if(accept("&&") || accept("&")) return AND;
+        return -1;
+    }
+
+    private int parsePrimary(){
+        skipSpaces();
+        if(pos == text.length) error("Unexpected end of expression");
+        char c = text[pos];
+        if(c == '0' || c == '1'){
+            pos++;
+            return node(CONST,c - '0',-1);
+        }
+        if(!isNameStart(c)) error("Unexpected '" + c + "'");
+        int start = pos;
+        while(pos < text.length && isNamePart(text[pos])) pos++;
+        String name = new String(text,start,pos - start);
+        if(name.equals("true")) return node(CONST,1,-1);
+        if(name.equals("false")) return node(CONST,0,-1);
+        Integer id = ids.get(name);
+        if(id == null){
+            id = names.size();
+            names.add(name);
+            ids.put(name,id);
+        }
+        return node(VAR,id,-1);
+    }
+
+    private boolean isNameStart(char c){
+        return Character.isLetter(c) || c == '_';
+    }
+
+    private boolean isNamePart(char c){
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.'
+            || c == '[' || c == ']';
+    }
+
+    private void skipSpaces(){
+        while(pos < text.length && Character.isWhitespace(text[pos])) pos++;
+    }
+
+    private boolean peek(String token){
+        skipSpaces();
+        if(pos + token.length() > text.length) return false;
+        for(int k=0;k<token.length();k++)
+            if(text[pos + k] != token.charAt(k)) return false;
+        return true;
+    }
+
+    private boolean accept(String token){
+        if(!peek(token)) return false;
+        pos += token.length();
+        return true;
+    }
+
+    private void error(String message){
+        throw new IllegalArgumentException(message + " at position " + pos);
+    }
+
+    /* Interning */
+    // node(op,l,r) : Returns the node op(l,r), creating it only if new
+    private int node(int o,int l,int r){
+        if(o == NOT && op[l] == NOT) return left[l];
+        if(o >= AND && o != IMP && l > r){
+            // Commutative : order the operands so a op b and b op a are shared
+            int temp = l;
+            l = r;
+            r = temp;
+        }
+        long key = ((long) o << 60) | ((long) l << 30) | (r & 0x3fffffffL);
+        int mask = internKey.length - 1;
+        int slot = slot(key,mask);
+        while(internKey[slot] != 0){
+            if(internKey[slot] == key + 1) return internNode[slot];
+            slot = (slot + 1) & mask;
+        }
+        if(nodeCount == op.length){
+            op = Arrays.copyOf(op,2*nodeCount);
+            left = Arrays.copyOf(left,2*nodeCount);
+            right = Arrays.copyOf(right,2*nodeCount);
+        }
+        op[nodeCount] = o;
+        left[nodeCount] = l;
+        right[nodeCount] = r;
+        // Keys are stored plus one so that 0 marks an empty slot
+        internKey[slot] = key + 1;
+        internNode[slot] = nodeCount;
+        if(2*(nodeCount + 1) > internKey.length) renewInternTable();
+        return nodeCount++;
+    }
+
+    private int slot(long key,int mask){
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    // Doubles the intern table, keeping it at most half full
+    private void renewInternTable(){
+        long[] oldKey = internKey;
+        int[] oldNode = internNode;
+        internKey = new long[2*oldKey.length];
+        internNode = new int[2*oldKey.length];
+        int mask = internKey.length - 1;
+        for(int k=0;k<oldKey.length;k++){
+            if(oldKey[k] == 0) continue;
+            int slot = slot(oldKey[k] - 1,mask);
+            while(internKey[slot] != 0) slot = (slot + 1) & mask;
+            internKey[slot] = oldKey[k];
+            internNode[slot] = oldNode[k];
+        }
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDExpression implementation");
+        ROBDDExpression e = parse("(a <-> b) & (c <-> d) | !(b <-> a) ^ req -> ack");
+        System.out.println("DAG nodes : " + e.getNodeCount()
+                           + ", variables : " + e.getVariableCount());
+        ROBDD test = new ROBDD(0);
+        int root = test.build(e);
+        System.out.println("ROBDD nodes : " + test.nodeCount(root));
+
+        // Same function as the ROBDD demo, with the new syntax
+        ROBDD same = new ROBDD(4);
+        root = same.build(parse("(x1 <-> x2) & (x3 <-> x4)"));
+        same.print();
+
+        // A large formula : a chain of 200000 clauses over 1000 variables
+        StringBuilder big = new StringBuilder();
+        for(int k=0;k<200000;k++){
+            if(k > 0) big.append(" & ");
+            big.append("(v").append(k % 1000).append(" | !v")
+               .append((k*7 + 1) % 1000).append(")");
+        }
+        long start = System.nanoTime();
+        ROBDDExpression parsed = parse(big.toString());
+        long millis = (System.nanoTime() - start)/1000000;
+        System.out.println("Parsed " + big.length() + " characters in "
+                           + millis + " ms, " + parsed.getNodeCount()
+                           + " DAG nodes");
+
+        // Deep nesting : !(!(...(x & y)... & y) & y), 100000 levels
+        int depth = 100000;
+        StringBuilder nested = new StringBuilder();
+        for(int k=0;k<depth;k++) nested.append("!(");
+        nested.append("x");
+        for(int k=0;k<depth;k++) nested.append(" & y)");
+        ROBDD deep = new ROBDD(0);
+        System.out.println(depth + " nested parentheses : ROBDD nodes "
+                           + deep.nodeCount(deep.build(parse(nested.toString()))));
+    }
+}
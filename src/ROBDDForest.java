@@ -0,0 +1,336 @@
+/* =========================================================================== *
+ * File : ROBDDForest.java                                                     *
+ * =========================================================================== *
+ * Class that keeps many named output functions in one ROBDD, for circuits     *
+ * with many outputs. The outputs share every common sub-graph, as they are    *
+ * nodes of the same table, and builds reuse the computed table of apply. The  *
+ * forest is exported as one Graphviz graph and saved to a file as one table   *
+ * holding only the nodes of the outputs, each shared node once, renumbered    *
+ * children first. A saved forest can be loaded into any ROBDD; variables are  *
+ * matched by name.                                                            *
+ * Prime Methods : add(name,root), build(names,outputs), getRoots()            *
+ *               : sharedNodeCount(), separateNodeCount(), toDot()             *
+ *               : save(file), load(file), load(file,bdd)                      *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+import java.io.*;
+
+public class ROBDDForest{
+
+    // Forest file header : "ROBF" and the format version
+    private static final int FOREST_MAGIC = 0x524F4246;
+    private static final int FOREST_VERSION = 1;
+
+    private ROBDD bdd;
+    private ArrayList<String> names = new ArrayList<String>();
+    private ArrayList<Integer> roots = new ArrayList<Integer>();
+    private HashMap<String,Integer> indices = new HashMap<String,Integer>();
+
+    // Constructor. An empty forest in a new ROBDD
+    public ROBDDForest(){
+        this(new ROBDD(0));
+    }
+
+    // Constructor. An empty forest whose outputs are nodes of bdd
+    public ROBDDForest(ROBDD bdd){
+        this.bdd = bdd;
+    }
+
+    // Getter-Setter Methods
+    // getBDD : Returns the ROBDD holding the outputs
+    public ROBDD getBDD(){
+        return bdd;
+    }
+
+    // size : Returns the number of outputs
+    public int size(){
+        return roots.size();
+    }
+
+    // getNames : Returns the output names, in the order they were added
+    public List<String> getNames(){
+        return Collections.unmodifiableList(names);
+    }
+
+    // getRoots : Returns the output roots, in the order they were added
+    public int[] getRoots(){
+        int[] result = new int[roots.size()];
+        for(int k=0;k<result.length;k++) result[k] = roots.get(k);
+        return result;
+    }
+
+    // getRoot(name) : Returns the root of the named output, -1 if unknown
+    public int getRoot(String name){
+        Integer index = indices.get(name);
+        return (index == null) ? -1 : roots.get(index);
+    }
+
+    // Public Interface
+    // add(name,root) : Adds root, a node of the forest's ROBDD, as the output
+    // name. Returns the index of the output.
+    public int add(String name,int root){
+        if(indices.containsKey(name))
+            throw new IllegalArgumentException("Output " + name + " already exists");
+        if(root < 0 || root >= bdd.getNodeCount())
+            throw new IllegalArgumentException("No node " + root + " in the ROBDD");
+        indices.put(name,names.size());
+        names.add(name);
+        roots.add(root);
+        return names.size() - 1;
+    }
+
+    // build(names,outputs) : Builds the outputs one after the other in the
+    // forest's ROBDD and adds them under the given names. Returns their roots.
+    public int[] build(String[] outputNames,ROBDDExpression[] outputs){
+        if(outputNames.length != outputs.length)
+            throw new IllegalArgumentException("names and outputs differ in length");
+        int[] built = new int[outputs.length];
+        for(int k=0;k<outputs.length;k++){
+            built[k] = bdd.build(outputs[k]);
+            add(outputNames[k],built[k]);
+        }
+        return built;
+    }
+
+    // build(names,expressions) : Same as build(names,outputs), the outputs
+    // being given as text
+    public int[] build(String[] outputNames,String[] expressions){
+        ROBDDExpression[] outputs = new ROBDDExpression[expressions.length];
+        for(int k=0;k<expressions.length;k++)
+            outputs[k] = ROBDDExpression.parse(expressions[k]);
+        return build(outputNames,outputs);
+    }
+
+    // sharedNodeCount : Returns the number of nodes of the forest, shared
+    // nodes counted once, terminals included
+    public int sharedNodeCount(){
+        return bdd.nodeCount(getRoots());
+    }
+
+    // separateNodeCount : Returns the sum of the node counts of the outputs,
+    // which is what separate ROBDDs per output would hold
+    public long separateNodeCount(){
+        long total = 0;
+        for(int root : roots) total += bdd.nodeCount(root);
+        return total;
+    }
+
+    // toDot : Returns the forest as a Graphviz digraph. Each node appears
+    // once; dashed edges are low edges.
+    public String toDot(){
+        int[][] T = bdd.getROBDDTable();
+        ROBDDVariables variables = bdd.getVariables();
+        int[] nodes = nodes();
+        StringBuilder dot = new StringBuilder("digraph forest {\n");
+        dot.append("  n0 [shape=box,label=\"0\"];\n");
+        dot.append("  n1 [shape=box,label=\"1\"];\n");
+        for(int u : nodes){
+            if(u <= 1) continue;
+            dot.append("  n").append(u).append(" [label=\"")
+               .append(variables.nameOf(T[u][0])).append("\"];\n");
+            dot.append("  n").append(u).append(" -> n").append(T[u][1])
+               .append(" [style=dashed];\n");
+            dot.append("  n").append(u).append(" -> n").append(T[u][2]).append(";\n");
+        }
+        for(int k=0;k<names.size();k++){
+            dot.append("  out").append(k).append(" [shape=plaintext,label=\"")
+               .append(names.get(k)).append("\"];\n");
+            dot.append("  out").append(k).append(" -> n").append(roots.get(k)).append(";\n");
+        }
+        return dot.append("}\n").toString();
+    }
+
+    // save(file) : Writes the variable names, the output names and the nodes
+    // of the outputs, renumbered from 2 up with children first
+    public void save(File file) throws IOException{
+        int[][] T = bdd.getROBDDTable();
+        int[] nodes = nodes();
+        int[] index = new int[bdd.getNodeCount()];
+        for(int k=0;k<nodes.length;k++) index[nodes[k]] = k;
+        ROBDDVariables variables = bdd.getVariables();
+        try(DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file),1 << 16))){
+            out.writeInt(FOREST_MAGIC);
+            out.writeInt(FOREST_VERSION);
+            out.writeInt(variables.size());
+            for(int i=1;i<=variables.size();i++) out.writeUTF(variables.nameOf(i));
+            // The terminals are always nodes[0] and nodes[1]
+            out.writeInt(nodes.length);
+            for(int k=2;k<nodes.length;k++){
+                int u = nodes[k];
+                out.writeInt(T[u][0]);
+                out.writeInt(index[T[u][1]]);
+                out.writeInt(index[T[u][2]]);
+            }
+            out.writeInt(names.size());
+            for(int k=0;k<names.size();k++){
+                out.writeUTF(names.get(k));
+                out.writeInt(index[roots.get(k)]);
+            }
+        }
+    }
+
+    // load(file) : Reads a forest written by save into a new ROBDD with the
+    // saved variable order
+    public static ROBDDForest load(File file) throws IOException{
+        return load(file,new ROBDD(0));
+    }
+
+    // load(file,bdd) : Reads a forest written by save into bdd. Variables
+    // are matched by name, unknown names being declared. If bdd orders the
+    // variables differently, the nodes are rebuilt with apply.
+    public static ROBDDForest load(File file,ROBDD bdd) throws IOException{
+        try(DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file),1 << 16))){
+            if(in.readInt() != FOREST_MAGIC)
+                throw new IOException(file + " is not an ROBDD forest");
+            int version = in.readInt();
+            if(version != FOREST_VERSION)
+                throw new IOException(file + " has forest version " + version);
+            int n = in.readInt();
+            int[] var = new int[n + 1];
+            boolean ordered = true;
+            for(int i=1;i<=n;i++){
+                var[i] = bdd.declare(in.readUTF());
+                if(i > 1 && var[i] < var[i-1]) ordered = false;
+            }
+            int count = in.readInt();
+            int[] node = new int[count];
+            node[1] = 1;
+            for(int k=2;k<count;k++){
+                int v = var[in.readInt()];
+                int low = node[in.readInt()];
+                int high = node[in.readInt()];
+                if(ordered){
+                    node[k] = bdd.mk(v,low,high);
+                }else{
+                    int x = bdd.mk(v,0,1);
+                    node[k] = bdd.apply(ROBDD.OR,bdd.apply(ROBDD.AND,x,high),
+                                        bdd.apply(ROBDD.AND,bdd.not(x),low));
+                }
+            }
+            ROBDDForest forest = new ROBDDForest(bdd);
+            int outputs = in.readInt();
+            for(int k=0;k<outputs;k++){
+                String name = in.readUTF();
+                forest.add(name,node[in.readInt()]);
+            }
+            return forest;
+        }
+    }
+
+    // Private Implementation
+    // nodes : Returns the nodes reachable from the outputs in increasing
+    // order, which puts children first. Always holds the terminals.
+    private int[] nodes(){
+        int[][] T = bdd.getROBDDTable();
+        boolean[] seen = new boolean[bdd.getNodeCount()];
+        int[] stack = new int[64];
+        int top = 0;
+        int count = 2;
+        seen[0] = true;
+        seen[1] = true;
+        for(int root : roots){
+            if(seen[root]) continue;
+            seen[root] = true;
+            count++;
+            stack[top++] = root;
+            while(top > 0){
+                int u = stack[--top];
+                for(int c=1;c<=2;c++){
+                    int child = T[u][c];
+                    if(seen[child]) continue;
+                    seen[child] = true;
+                    count++;
+                    if(top == stack.length) stack = Arrays.copyOf(stack,2*top);
+                    stack[top++] = child;
+                }
+            }
+        }
+        int[] nodes = new int[count];
+        int k = 0;
+        for(int u=0;u<seen.length;u++) if(seen[u]) nodes[k++] = u;
+        return nodes;
+    }
+
+    // Test Program
+    public static void main(String[] args) throws IOException{
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDForest implementation");
+        // The sum bits and the carry out of a 24 bit adder, as one forest
+        // and as one ROBDD per output
+        int width = 24;
+        String[] outputNames = new String[width + 1];
+        String[] outputs = new String[width + 1];
+        for(int i=0;i<width;i++){
+            outputNames[i] = "s[" + i + "]";
+            outputs[i] = "a[" + i + "] ^ b[" + i + "]"
+                         + ((i == 0) ? "" : " ^ " + carry(i - 1));
+        }
+        outputNames[width] = "cout";
+        outputs[width] = carry(width - 1);
+
+        long start = System.nanoTime();
+        ROBDDForest forest = new ROBDDForest();
+        declare(forest.getBDD(),width);
+        forest.build(outputNames,outputs);
+        System.out.println(forest.size() + " outputs : " + forest.sharedNodeCount()
+                           + " nodes shared, " + forest.separateNodeCount()
+                           + " summed over the outputs, "
+                           + forest.getBDD().getNodeCount() + " in the manager, "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+        start = System.nanoTime();
+        long separate = 0;
+        for(int k=0;k<outputs.length;k++){
+            ROBDD single = new ROBDD(0);
+            declare(single,width);
+            single.build(ROBDDExpression.parse(outputs[k]));
+            separate += single.getNodeCount();
+        }
+        System.out.println("One ROBDD per output : " + separate + " nodes in "
+                           + outputs.length + " managers, "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+
+        // Saved once, loaded into a fresh ROBDD and into one with b[i]
+        // declared above a[i]
+        File file = File.createTempFile("forest",".robf");
+        file.deleteOnExit();
+        forest.save(file);
+        ROBDDForest loaded = load(file);
+        System.out.println("Saved " + file.length() + " bytes, loaded "
+                           + loaded.size() + " outputs, "
+                           + loaded.sharedNodeCount() + " nodes shared");
+        ROBDD other = new ROBDD(0);
+        for(int i=0;i<width;i++){
+            other.declare("b[" + i + "]");
+            other.declare("a[" + i + "]");
+        }
+        ROBDDForest reordered = load(file,other);
+        int s3 = reordered.getRoot("s[3]");
+        int expected = other.build(ROBDDExpression.parse(
+            "a[3] ^ b[3] ^ (" + carry(2) + ")"));
+        System.out.println("s[3] in the other order : " + other.nodeCount(s3)
+                           + " nodes, same function " + (s3 == expected));
+        System.out.println(load(file).toDot().split("\n").length
+                           + " lines of Graphviz");
+    }
+
+    // declare(bdd,width) : Declares a[0] b[0] a[1] b[1] ...
+    private static void declare(ROBDD bdd,int width){
+        for(int i=0;i<width;i++){
+            bdd.declare("a[" + i + "]");
+            bdd.declare("b[" + i + "]");
+        }
+    }
+
+    // carry(i) : Expression of the carry out of bit i of a + b
+    private static String carry(int i){
+        String c = "a[0] & b[0]";
+        for(int k=1;k<=i;k++)
+            c = "a[" + k + "] & b[" + k + "] | (a[" + k + "] ^ b[" + k + "]) & (" + c + ")";
+        return "(" + c + ")";
+    }
+}
@@ -0,0 +1,240 @@
+/* =========================================================================== *
+ * File : ROBDDHeapStore.java                                                  *
+ * =========================================================================== *
+ * Node store keeping the tables on the Java heap. T is an array of int[3]     *
+ * rows grown by the growth factor of the config, H an int array with open     *
+ * addressing and every computed table a long array of keys next to int        *
+ * arrays of aux fields and results. getTable returns T itself. H keeps the    *
+ * hash of every node next to it, so that a lookup only reads the rows of T    *
+ * whose hash matches and growing H does not read T at all.                    *
+ * Prime Methods : add(i,l,h), lookup(i,l,h), insert(node)                     *
+ *               : getCached(table,key,aux), putCached(table,key,aux,value)    *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ROBDDHeapStore implements ROBDDNodeStore{
+
+    private int[][] T;
+    private int[] H;
+    // HHash[slot] : hash of the node in H[slot]
+    private int[] HHash;
+    private int nodeCount;
+    private int capacity;
+    private double growthFactor;
+    private int nodeLimit;
+    private long modificationCount;
+    // Computed tables, allocated by the first putCached
+    private int cacheSize;
+    private long[][] cacheKey;
+    private int[][] cacheAux;
+    private int[][] cacheValue;
+
+    // Constructor. Sizes and grows the tables as given by config
+    public ROBDDHeapStore(ROBDDConfig config){
+        growthFactor = config.getGrowthFactor();
+        nodeLimit = Math.min(config.getNodeLimit(),MAX_NODES);
+        capacity = Math.max(2,Math.min(config.getInitialNodeCapacity(),nodeLimit));
+        cacheSize = config.getCacheSize();
+        T = new int[capacity][];
+        nodeCount = 0;
+
+        // Initializing H. Open addressing, the size is a power of 2
+        H = new int[config.getUniqueTableSize()];
+        HHash = new int[H.length];
+        Arrays.fill(H,-1);
+    }
+
+    // Getter-Setter Methods
+    public int getNodeCount(){
+        return nodeCount;
+    }
+
+    public int getVar(int u){
+        return T[u][0];
+    }
+
+    public int getLow(int u){
+        return T[u][1];
+    }
+
+    public int getHigh(int u){
+        return T[u][2];
+    }
+
+    public void setVar(int u,int i){
+        modificationCount++;
+        T[u][0] = i;
+    }
+
+    public int[][] getTable(){
+        return T;
+    }
+
+    public long getModificationCount(){
+        return modificationCount;
+    }
+
+    public int getUniqueTableSize(){
+        return H.length;
+    }
+
+    public int getUnique(int slot){
+        return H[slot];
+    }
+
+    public int getCacheSize(){
+        return cacheSize;
+    }
+
+    public boolean hasCaches(){
+        return cacheKey != null;
+    }
+
+    /* Supporting Operations on T*/
+    // add(i,l,h) : Adds and returns a new node with var(u) = i, var(l) = l ...
+    // Takes O(1) time. Throws ROBDDNodeLimitException if T is at its limit
+    public int add(int i,int l,int h){
+        if(nodeCount == nodeLimit) throw new ROBDDNodeLimitException(nodeLimit);
+        int curNodeIndex = nodeCount++;
+        if(curNodeIndex == capacity) expandArray();
+        T[curNodeIndex] = new int[]{i,l,h};
+        return curNodeIndex;
+    }
+
+    // truncate(count) : Removes the nodes from count on, and rebuilds H
+    public void truncate(int count){
+        for(int j=count;j<nodeCount;j++) T[j] = null;
+        nodeCount = count;
+        modificationCount++;
+        rehash(H.length);
+    }
+
+    // expandArray : Grows T by growthFactor, without going over nodeLimit.
+    // Only the row references are copied.
+    private void expandArray(){
+        long grown = (long) (capacity*growthFactor);
+        capacity = (int) Math.max(capacity + 1,Math.min(grown,nodeLimit));
+        T = Arrays.copyOf(T,capacity);
+    }
+
+    /* Supporting Operations on H */
+    // lookup(i,l,h) : Returns the node with attributes in T, -1 if absent.
+    // Takes O(1) expected time
+    public int lookup(int i,int l,int h){
+        int mask = H.length - 1;
+        int hash = ROBDDNodeStore.nodeHash(i,l,h);
+        for(int slot=hash & mask;H[slot]!=-1;slot=(slot+1) & mask){
+            if(HHash[slot] != hash) continue;
+            int[] node = T[H[slot]];
+            if(node[0] == i && node[1] == l && node[2] == h) return H[slot];
+        }
+        return -1;
+    }
+
+    // insert(node) : Inserts node into Hash Table
+    public void insert(int node){
+        // Keep the load factor of H below 1/2
+        if(2L*(nodeCount - 2) > H.length) grow();
+        place(H,HHash,node,ROBDDNodeStore.nodeHash(T[node][0],T[node][1],T[node][2]));
+    }
+
+    // rehash(size) : Renews the hash table with the given size, rehashing
+    // every node
+    public void rehash(int size){
+        int[] newH = new int[size];
+        int[] newHash = new int[size];
+        Arrays.fill(newH,-1);
+        for(int j=2;j<nodeCount;j++)
+            place(newH,newHash,j,ROBDDNodeStore.nodeHash(T[j][0],T[j][1],T[j][2]));
+        H = newH;
+        HHash = newHash;
+    }
+
+    public void setUniqueTable(int[] slots){
+        H = slots.clone();
+        HHash = new int[H.length];
+        for(int k=0;k<H.length;k++){
+            int j = H[k];
+            if(j != -1) HHash[k] = ROBDDNodeStore.nodeHash(T[j][0],T[j][1],T[j][2]);
+        }
+    }
+
+    // grow : Doubles H, moving the nodes with their stored hashes
+    private void grow(){
+        int[] newH = new int[2*H.length];
+        int[] newHash = new int[2*H.length];
+        Arrays.fill(newH,-1);
+        for(int k=0;k<H.length;k++)
+            if(H[k] != -1) place(newH,newHash,H[k],HHash[k]);
+        H = newH;
+        HHash = newHash;
+    }
+
+    private static void place(int[] table,int[] hashes,int node,int hash){
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while(table[slot] != -1) slot = (slot+1) & mask;
+        table[slot] = node;
+        hashes[slot] = hash;
+    }
+
+    /* Supporting Operations on G */
+    public int getCached(int table,long key,int aux){
+        if(cacheKey == null) return -1;
+        int slot = ROBDDNodeStore.cacheSlot(key,cacheSize);
+        if(cacheKey[table][slot] == key && cacheAux[table][slot] == aux)
+            return cacheValue[table][slot];
+        return -1;
+    }
+
+    public void putCached(int table,long key,int aux,int value){
+        if(cacheKey == null) allocateCaches();
+        int slot = ROBDDNodeStore.cacheSlot(key,cacheSize);
+        cacheKey[table][slot] = key;
+        cacheAux[table][slot] = aux;
+        cacheValue[table][slot] = value;
+    }
+
+    public void clearCaches(){
+        if(cacheKey == null) return;
+        for(int t=0;t<CACHES;t++) Arrays.fill(cacheKey[t],-1);
+    }
+
+    public long getCacheKey(int table,int slot){
+        return (cacheKey == null) ? -1 : cacheKey[table][slot];
+    }
+
+    public int getCacheAux(int table,int slot){
+        return (cacheKey == null) ? 0 : cacheAux[table][slot];
+    }
+
+    public int getCacheValue(int table,int slot){
+        return (cacheKey == null) ? 0 : cacheValue[table][slot];
+    }
+
+    public void setCacheEntry(int table,int slot,long key,int aux,int value){
+        if(cacheKey == null) allocateCaches();
+        cacheKey[table][slot] = key;
+        cacheAux[table][slot] = aux;
+        cacheValue[table][slot] = value;
+    }
+
+    // allocateCaches : Allocates the computed tables, all entries empty
+    private void allocateCaches(){
+        cacheKey = new long[CACHES][cacheSize];
+        cacheAux = new int[CACHES][cacheSize];
+        cacheValue = new int[CACHES][cacheSize];
+        clearCaches();
+    }
+
+    // close : Drops the tables, leaving them to the garbage collector
+    public void close(){
+        T = null;
+        H = null;
+        cacheKey = null;
+        cacheAux = null;
+        cacheValue = null;
+    }
+}
@@ -0,0 +1,275 @@
+/* =========================================================================== *
+ * File : ROBDDISOP.java                                                       *
+ * =========================================================================== *
+ * Class that computes an irredundant sum of products for an ROBDD with the    *
+ * Minato-Morreale algorithm. Given lower <= upper, the cover is between them; *
+ * for a single function both are the same. No cube of the cover can be        *
+ * dropped and no literal removed from a cube. The cover is built as a ZDD     *
+ * over literals, variable i of the ROBDD giving the ZDD variables 2i-1 (x_i)  *
+ * and 2i (NOT x_i). Cubes are streamed from the ZDD one at a time, each as    *
+ * the sorted literals +i / -i.                                                *
+ * Prime Methods : ROBDDISOP(bdd,f), ROBDDISOP(bdd,lower,upper)                *
+ *               : iterator(), cubes(), getZDD(), getCover()                   *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class ROBDDISOP implements Iterable<int[]>{
+
+    // a AND NOT b as apply operator, so that NOT b is never built
+    private static final int AND_NOT = 4;
+
+    private ROBDD bdd;
+    private ZDD zdd;
+    private int zddRoot;
+    private int cover;
+    // Results of isop for (lower,upper), open addressing. Keys are stored
+    // plus one so that 0 marks an empty slot.
+    private long[] memoKey = new long[1024];
+    private int[] memoCubes = new int[1024];
+    private int[] memoFunction = new int[1024];
+    private int memoCount;
+
+    // Constructor. The irredundant cover of f
+    public ROBDDISOP(ROBDD bdd,int f){
+        this(bdd,f,f);
+    }
+
+    // Constructor. An irredundant cover of some function between lower and
+    // upper, the other assignments being don't cares
+    public ROBDDISOP(ROBDD bdd,int lower,int upper){
+        if(!bdd.implies(lower,upper))
+            throw new IllegalArgumentException("lower does not imply upper");
+        this.bdd = bdd;
+        zdd = new ZDD(2*bdd.getVariables().size());
+        int[] result = isop(lower,upper);
+        zddRoot = result[0];
+        cover = result[1];
+        memoKey = null;
+        memoCubes = null;
+        memoFunction = null;
+    }
+
+    // Getter-Setter Methods
+    // getZDD, getZDDRoot : Return the cover as a ZDD over literals
+    public ZDD getZDD(){
+        return zdd;
+    }
+
+    public int getZDDRoot(){
+        return zddRoot;
+    }
+
+    // getCover : Returns the root, in the ROBDD, of the function the cover
+    // represents
+    public int getCover(){
+        return cover;
+    }
+
+    // cubeCount : Returns the number of cubes of the cover
+    public long cubeCount(){
+        return zdd.count(zddRoot);
+    }
+
+    // Public Interface
+    // iterator : Returns the cubes one at a time. Cubes are not stored,
+    // they are read off the ZDD as the iteration goes.
+    public Iterator<int[]> iterator(){
+        return new CubeIterator();
+    }
+
+    // cubes : Returns the cubes as a stream
+    public Stream<int[]> cubes(){
+        return StreamSupport.stream(spliterator(),false);
+    }
+
+    // toString : Returns the cover as a sum of products, x3 !x5 + ...
+    public String toString(){
+        StringBuilder sop = new StringBuilder();
+        ROBDDVariables variables = bdd.getVariables();
+        for(int[] cube : this){
+            if(sop.length() > 0) sop.append(" + ");
+            if(cube.length == 0) sop.append("1");
+            for(int k=0;k<cube.length;k++){
+                if(k > 0) sop.append(" ");
+                if(cube[k] < 0) sop.append("!");
+                sop.append(variables.nameOf(Math.abs(cube[k])));
+            }
+        }
+        return (sop.length() == 0) ? "0" : sop.toString();
+    }
+
+    // Private Implementation
+    // isop(lower,upper) : Returns {cover as ZDD root, its function as ROBDD
+    // root}
+    private int[] isop(int lower,int upper){
+        if(lower == 0) return new int[]{0,0};
+        if(upper == 1) return new int[]{1,1};
+        long key = ((long) lower << 32) | upper;
+        int slot = find(key);
+        if(memoKey[slot] == key + 1)
+            return new int[]{memoCubes[slot],memoFunction[slot]};
+        int[][] T = bdd.getROBDDTable();
+        int x = Math.min(T[lower][0],T[upper][0]);
+        int lower0 = cofactor(lower,x,0), lower1 = cofactor(lower,x,1);
+        int upper0 = cofactor(upper,x,0), upper1 = cofactor(upper,x,1);
+
+        // Cubes with NOT x, cubes with x, then cubes without x
+        int[] negative = isop(bdd.apply(AND_NOT,lower0,upper1),upper0);
+        int[] positive = isop(bdd.apply(AND_NOT,lower1,upper0),upper1);
+        int rest = bdd.apply(ROBDD.OR,bdd.apply(AND_NOT,lower0,negative[1]),
+                                      bdd.apply(AND_NOT,lower1,positive[1]));
+        int[] both = isop(rest,bdd.apply(ROBDD.AND,upper0,upper1));
+
+        int cubes = zdd.mk(2*x - 1,zdd.mk(2*x,both[0],negative[0]),positive[0]);
+        // A cover of a single function is that function
+        int function = (lower == upper) ? lower
+                     : bdd.mk(x,bdd.apply(ROBDD.OR,negative[1],both[1]),
+                                bdd.apply(ROBDD.OR,positive[1],both[1]));
+        remember(key,cubes,function);
+        return new int[]{cubes,function};
+    }
+
+    // Returns node with variable v set to val, v being at most var(node)
+    private int cofactor(int node,int v,int val){
+        int[][] T = bdd.getROBDDTable();
+        if(T[node][0] != v) return node;
+        return T[node][1 + val];
+    }
+
+    // find(key) : Returns the slot of key, or the empty slot it would take
+    private int find(long key){
+        int mask = memoKey.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while(memoKey[slot] != 0 && memoKey[slot] != key + 1) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void remember(long key,int cubes,int function){
+        if(2*(memoCount + 1) > memoKey.length){
+            long[] oldKey = memoKey;
+            int[] oldCubes = memoCubes;
+            int[] oldFunction = memoFunction;
+            memoKey = new long[2*oldKey.length];
+            memoCubes = new int[2*oldKey.length];
+            memoFunction = new int[2*oldKey.length];
+            memoCount = 0;
+            for(int k=0;k<oldKey.length;k++)
+                if(oldKey[k] != 0) remember(oldKey[k] - 1,oldCubes[k],oldFunction[k]);
+        }
+        int slot = find(key);
+        memoKey[slot] = key + 1;
+        memoCubes[slot] = cubes;
+        memoFunction[slot] = function;
+        memoCount++;
+    }
+
+    // Depth first walk of the ZDD paths to 1. The high edge taken at depth d
+    // is path[d]; pending low edges are kept on a stack with their depth.
+    private class CubeIterator implements Iterator<int[]>{
+        private int[] nodeStack = new int[64];
+        private int[] depthStack = new int[64];
+        private int size;
+        private int[] path = new int[zdd.getZDDTable()[0][0]];
+        private int[] next;
+
+        CubeIterator(){
+            push(zddRoot,0);
+            advance();
+        }
+
+        public boolean hasNext(){
+            return next != null;
+        }
+
+        public int[] next(){
+            if(next == null) throw new NoSuchElementException();
+            int[] cube = next;
+            advance();
+            return cube;
+        }
+
+        private void push(int node,int depth){
+            if(node == 0) return;
+            if(size == nodeStack.length){
+                nodeStack = Arrays.copyOf(nodeStack,2*size);
+                depthStack = Arrays.copyOf(depthStack,2*size);
+            }
+            nodeStack[size] = node;
+            depthStack[size++] = depth;
+        }
+
+        // Finds the next path to 1
+        private void advance(){
+            int[][] T = zdd.getZDDTable();
+            while(size > 0){
+                int node = nodeStack[--size];
+                int depth = depthStack[size];
+                if(node == 1){
+                    next = new int[depth];
+                    for(int k=0;k<depth;k++)
+                        next[k] = (path[k] % 2 == 1) ? (path[k] + 1)/2 : -(path[k]/2);
+                    return;
+                }
+                push(T[node][1],depth);
+                path[depth] = T[node][0];
+                push(T[node][2],depth + 1);
+            }
+            next = null;
+        }
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDISOP implementation");
+        ROBDD bdd = new ROBDD(0);
+        int f = bdd.build(ROBDDExpression.parse(
+            "a & b | a & !b & c | !a & c & d | b & c & d"));
+        ROBDDISOP cover = new ROBDDISOP(bdd,f);
+        System.out.println("Cover : " + cover);
+        System.out.println("Same function : " + (cover.getCover() == f));
+
+        // Don't cares : any cover between lower and upper
+        int lower = bdd.build(ROBDDExpression.parse("a & b & c"));
+        int upper = bdd.build(ROBDDExpression.parse("a & (b | c)"));
+        System.out.println("Between a&b&c and a&(b|c) : "
+                           + new ROBDDISOP(bdd,lower,upper));
+
+        // Threshold function, at least n/2 of n variables : C(n,n/2) cubes
+        int n = 24;
+        ROBDD big = new ROBDD(n);
+        int k = n/2;
+        // atLeast[j] : at least j of the variables from i down are set
+        int[] atLeast = new int[k + 1];
+        atLeast[0] = 1;
+        for(int i=n;i>=1;i--)
+            for(int j=k;j>=1;j--) atLeast[j] = big.mk(i,atLeast[j],atLeast[j-1]);
+        long start = System.nanoTime();
+        ROBDDISOP threshold = new ROBDDISOP(big,atLeast[k]);
+        long cubes = threshold.cubes().count();
+        System.out.println("At least " + k + " of " + n + " : "
+                           + big.nodeCount(atLeast[k]) + " ROBDD nodes, "
+                           + threshold.cubeCount() + " cubes (" + cubes
+                           + " streamed), " + threshold.getZDD().getNodeCount()
+                           + " ZDD nodes, " + (System.nanoTime() - start)/1000000
+                           + " ms");
+
+        // x1 y1 + ... + xm ym with all the x above all the y : 2^(m+1) nodes
+        int m = 19;
+        ROBDD pairs = new ROBDD(2*m);
+        int g = 0;
+        for(int i=m;i>=1;i--)
+            g = pairs.apply(ROBDD.OR,g,pairs.apply(ROBDD.AND,pairs.mk(i,0,1),
+                                                   pairs.mk(m + i,0,1)));
+        start = System.nanoTime();
+        ROBDDISOP pairCover = new ROBDDISOP(pairs,g);
+        System.out.println("Pairs of " + m + " : " + pairs.nodeCount(g)
+                           + " ROBDD nodes, " + pairCover.cubeCount() + " cubes, "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+    }
+}
@@ -0,0 +1,27 @@
+/* =========================================================================== *
+ * File : ROBDDNodeLimitException.java                                         *
+ * =========================================================================== *
+ * Exception thrown when an operation would grow an ROBDD table beyond the     *
+ * node limit of its ROBDDConfig. The node that did not fit is not added, so   *
+ * the table is left as it was before the failing mk. No table holds more      *
+ * than ROBDDNodeStore.MAX_NODES nodes, whatever the config allows.            *
+ * =========================================================================== */
+
+public class ROBDDNodeLimitException extends RuntimeException{
+
+    private static final long serialVersionUID = 1L;
+
+    private final int limit;
+
+    public ROBDDNodeLimitException(int limit){
+        super("ROBDD node limit of " + limit + " nodes reached"
+              + (limit == ROBDDNodeStore.MAX_NODES
+                 ? ", the largest number of nodes a table can index" : ""));
+        this.limit = limit;
+    }
+
+    // getLimit : Returns the node limit that was reached
+    public int getLimit(){
+        return limit;
+    }
+}
@@ -0,0 +1,125 @@
+/* =========================================================================== *
+ * File : ROBDDNodeStore.java                                                  *
+ * =========================================================================== *
+ * Interface of the tables behind a decision diagram : the node table T, the   *
+ * unique table H and the computed tables G. ROBDD, ZDD and ADD keep their     *
+ * reduction rules and recursions and reach the tables only through a store.   *
+ * ROBDDHeapStore keeps the tables on the Java heap, ROBDDOffHeapStore in      *
+ * direct ByteBuffers.                                                         *
+ * Nodes 0 and 1 are the terminals and are never entered in H. A node u is     *
+ * the triple (var,low,high) and its children have smaller indices.            *
+ * Node indices are ints and H, kept at most half full, needs a power of 2     *
+ * slots that an int can count, so a store holds at most MAX_NODES = 2^29      *
+ * nodes whatever the config allows.                                           *
+ * There are CACHES computed tables, each direct mapped with cacheSize entries *
+ * holding a long key, an int aux checked with the key, and the result node.   *
+ * Prime Methods : add(i,l,h), lookup(i,l,h), insert(node), truncate(count)    *
+ *               : getCached(table,key,aux), putCached(table,key,aux,value)    *
+ *               : close()                                                     *
+ * =========================================================================== */
+
+public interface ROBDDNodeStore extends AutoCloseable{
+
+    // Number of computed tables
+    int CACHES = 3;
+
+    // Largest number of nodes of a store, H then having 2^30 slots
+    int MAX_NODES = 1 << 29;
+
+    /* Node table T */
+    // getNodeCount : Returns the number of nodes, terminals included
+    int getNodeCount();
+
+    // getVar, getLow, getHigh : Return the fields of node u
+    int getVar(int u);
+
+    int getLow(int u);
+
+    int getHigh(int u);
+
+    // setVar(u,i) : Sets the variable of u. Only used to move the terminals
+    // below newly declared variables
+    void setVar(int u,int i);
+
+    // add(i,l,h) : Appends a node and returns its index. Throws
+    // ROBDDNodeLimitException if the node limit of the config, or
+    // MAX_NODES, is reached
+    int add(int i,int l,int h);
+
+    // truncate(count) : Removes the nodes from count on and rebuilds H
+    void truncate(int count);
+
+    // getModificationCount : Number of setVar and truncate calls so far.
+    // While it stays the same, nodes are only appended, so results computed
+    // for the nodes already there remain valid
+    long getModificationCount();
+
+    // getTable : Returns T as rows {var,low,high}. Throws
+    // UnsupportedOperationException if T is not kept on the heap
+    int[][] getTable();
+
+    /* Unique table H */
+    // lookup(i,l,h) : Returns the node (i,l,h), -1 if absent
+    int lookup(int i,int l,int h);
+
+    // insert(node) : Enters node in H, growing H to keep it half empty
+    void insert(int node);
+
+    // getUniqueTableSize, getUnique(slot) : Size of H and node in a slot,
+    // -1 for an empty slot
+    int getUniqueTableSize();
+
+    int getUnique(int slot);
+
+    // rehash(size) : Rebuilds H with size slots, size being a power of 2
+    void rehash(int size);
+
+    // setUniqueTable(slots) : Replaces H by the given slots, read with
+    // getUnique from a store holding the same nodes. No node is rehashed
+    void setUniqueTable(int[] slots);
+
+    /* Computed tables G */
+    // getCacheSize : Number of entries of each computed table
+    int getCacheSize();
+
+    // hasCaches : Returns whether the computed tables have been allocated.
+    // They are allocated by the first putCached
+    boolean hasCaches();
+
+    // getCached(table,key,aux) : Returns the node stored for key and aux, -1
+    // if the entry holds something else
+    int getCached(int table,long key,int aux);
+
+    // putCached(table,key,aux,value) : Stores value for key and aux,
+    // replacing the entry in its slot
+    void putCached(int table,long key,int aux,int value);
+
+    // clearCaches : Empties the computed tables
+    void clearCaches();
+
+    // getCacheKey, getCacheAux, getCacheValue, setCacheEntry : Read and write
+    // the entry in a slot, as used by snapshots. The key of an empty entry
+    // is -1
+    long getCacheKey(int table,int slot);
+
+    int getCacheAux(int table,int slot);
+
+    int getCacheValue(int table,int slot);
+
+    void setCacheEntry(int table,int slot,long key,int aux,int value);
+
+    // close : Releases the tables. The store cannot be used afterwards
+    void close();
+
+    /* Hashing shared by the stores */
+    // nodeHash(i,l,h) : HashCode of a node in H
+    static int nodeHash(int i,int l,int h){
+        int hashCode = i*0x9E3779B1 + l*0x85EBCA77 + h*0xC2B2AE3D;
+        return hashCode ^ (hashCode >>> 15);
+    }
+
+    // cacheSlot(key,size) : Slot of key in a computed table of size entries
+    static int cacheSlot(long key,int size){
+        return (int) ((key ^ (key >>> 29)) * 0x9E3779B97F4A7C15L >>> 40) & (size - 1);
+    }
+}
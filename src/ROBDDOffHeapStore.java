@@ -0,0 +1,346 @@
+/* =========================================================================== *
+ * File : ROBDDOffHeapStore.java                                               *
+ * =========================================================================== *
+ * Node store keeping the tables outside of the Java heap. T, H and the        *
+ * computed tables are held in direct ByteBuffers allocated segment by         *
+ * segment, so T grows one segment at a time and is never copied, and the      *
+ * garbage collector only sees a handful of buffer objects whatever the number *
+ * of nodes. The segments are sized from the ROBDDConfig : a segment of T      *
+ * holds initialNodeCapacity nodes, H starts with uniqueTableSize slots and    *
+ * each computed table has cacheSize entries, none larger than 2^20 records.   *
+ * Used through new ROBDD(variables,store), which then runs the same mk and    *
+ * apply code as on the heap.                                                  *
+ * Prime Methods : add(i,l,h), lookup(i,l,h), insert(node)                     *
+ *               : getCached(table,key,aux), putCached(table,key,aux,value)    *
+ *               : close()                                                     *
+ * Limitations   : getTable is not supported, so the classes reading the       *
+ *                 int[][] table of an ROBDD cannot work on such an ROBDD.     *
+ *                 Direct buffers are freed by the GC once close() drops them. *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class ROBDDOffHeapStore implements ROBDDNodeStore{
+
+    // Bytes per record : a node of T is var, low, high, a slot of H holds
+    // node + 1 (0 marks an empty slot), an entry of a computed table holds
+    // key + 1 (0 marks an empty entry), aux and the result
+    private static final int NODE_BYTES = 12;
+    private static final int SLOT_BYTES = 4;
+    private static final int ENTRY_BYTES = 16;
+    // Largest number of records in one segment
+    private static final int MAX_SEGMENT = 1 << 20;
+
+    private Segments T;
+    private Segments H;
+    private int HSize;
+    private int nodeCount;
+    private int nodeLimit;
+    private long modificationCount;
+    private Segments[] G;
+    private int cacheSize;
+
+    // Constructor. Sizes the segments as given by config
+    public ROBDDOffHeapStore(ROBDDConfig config){
+        nodeLimit = Math.min(config.getNodeLimit(),MAX_NODES);
+        cacheSize = config.getCacheSize();
+        T = new Segments(NODE_BYTES,config.getInitialNodeCapacity());
+        nodeCount = 0;
+        HSize = config.getUniqueTableSize();
+        H = new Segments(SLOT_BYTES,HSize);
+        H.ensure(HSize);
+    }
+
+    // Getter-Setter Methods
+    public int getNodeCount(){
+        return nodeCount;
+    }
+
+    public int getVar(int u){
+        return T.buffer(u).getInt(T.offset(u));
+    }
+
+    public int getLow(int u){
+        return T.buffer(u).getInt(T.offset(u) + 4);
+    }
+
+    public int getHigh(int u){
+        return T.buffer(u).getInt(T.offset(u) + 8);
+    }
+
+    public void setVar(int u,int i){
+        modificationCount++;
+        T.buffer(u).putInt(T.offset(u),i);
+    }
+
+    // getTable : T is not on the heap
+    public int[][] getTable(){
+        throw new UnsupportedOperationException("T is stored off-heap");
+    }
+
+    public long getModificationCount(){
+        return modificationCount;
+    }
+
+    public int getUniqueTableSize(){
+        return HSize;
+    }
+
+    public int getUnique(int slot){
+        return H.buffer(slot).getInt(H.offset(slot)) - 1;
+    }
+
+    public int getCacheSize(){
+        return cacheSize;
+    }
+
+    public boolean hasCaches(){
+        return G != null;
+    }
+
+    /* Supporting Operations on T*/
+    // add(i,l,h) : Adds and returns a new node with var(u) = i, var(l) = l ...
+    // Takes O(1) time, T grows by whole segments and is never copied.
+    // Throws ROBDDNodeLimitException if T is at its limit
+    public int add(int i,int l,int h){
+        if(nodeCount == nodeLimit) throw new ROBDDNodeLimitException(nodeLimit);
+        int curNodeIndex = nodeCount++;
+        T.ensure(nodeCount);
+        ByteBuffer buffer = T.buffer(curNodeIndex);
+        int offset = T.offset(curNodeIndex);
+        buffer.putInt(offset,i);
+        buffer.putInt(offset + 4,l);
+        buffer.putInt(offset + 8,h);
+        return curNodeIndex;
+    }
+
+    // truncate(count) : Removes the nodes from count on, and rebuilds H.
+    // The segments of T are kept for the nodes to come
+    public void truncate(int count){
+        nodeCount = count;
+        modificationCount++;
+        rehash(HSize);
+    }
+
+    /* Supporting Operations on H */
+    // lookup(i,l,h) : Returns the node with attributes in T, -1 if absent.
+    // Takes O(1) expected time
+    public int lookup(int i,int l,int h){
+        int mask = HSize - 1;
+        for(int slot=ROBDDNodeStore.nodeHash(i,l,h) & mask;;slot=(slot+1) & mask){
+            int node = getUnique(slot);
+            if(node == -1) return -1;
+            if(getVar(node) == i && getLow(node) == l && getHigh(node) == h)
+                return node;
+        }
+    }
+
+    // insert(node) : Inserts node into Hash Table
+    public void insert(int node){
+        // Keep the load factor of H below 1/2. Renewing also inserts node
+        if(2L*(nodeCount - 2) > HSize){
+            rehash(2*HSize);
+            return;
+        }
+        place(H,HSize,node);
+    }
+
+    // rehash(size) : Renews the hash table with the given size, rehashing
+    // every node
+    public void rehash(int size){
+        Segments newH = new Segments(SLOT_BYTES,size);
+        newH.ensure(size);
+        for(int j=2;j<nodeCount;j++) place(newH,size,j);
+        H.close();
+        H = newH;
+        HSize = size;
+    }
+
+    public void setUniqueTable(int[] slots){
+        Segments newH = new Segments(SLOT_BYTES,slots.length);
+        newH.ensure(slots.length);
+        for(int k=0;k<slots.length;k++)
+            newH.buffer(k).putInt(newH.offset(k),slots[k] + 1);
+        H.close();
+        H = newH;
+        HSize = slots.length;
+    }
+
+    private void place(Segments table,int size,int node){
+        int mask = size - 1;
+        int hash = ROBDDNodeStore.nodeHash(getVar(node),getLow(node),getHigh(node));
+        int slot = hash & mask;
+        while(table.buffer(slot).getInt(table.offset(slot)) != 0)
+            slot = (slot+1) & mask;
+        table.buffer(slot).putInt(table.offset(slot),node + 1);
+    }
+
+    /* Supporting Operations on G */
+    public int getCached(int table,long key,int aux){
+        if(G == null) return -1;
+        int slot = ROBDDNodeStore.cacheSlot(key,cacheSize);
+        ByteBuffer buffer = G[table].buffer(slot);
+        int offset = G[table].offset(slot);
+        if(buffer.getLong(offset) == key + 1 && buffer.getInt(offset + 8) == aux)
+            return buffer.getInt(offset + 12);
+        return -1;
+    }
+
+    public void putCached(int table,long key,int aux,int value){
+        setCacheEntry(table,ROBDDNodeStore.cacheSlot(key,cacheSize),key,aux,value);
+    }
+
+    public void clearCaches(){
+        if(G == null) return;
+        for(int t=0;t<CACHES;t++){
+            for(int slot=0;slot<cacheSize;slot++)
+                G[t].buffer(slot).putLong(G[t].offset(slot),0);
+        }
+    }
+
+    public long getCacheKey(int table,int slot){
+        if(G == null) return -1;
+        return G[table].buffer(slot).getLong(G[table].offset(slot)) - 1;
+    }
+
+    public int getCacheAux(int table,int slot){
+        if(G == null) return 0;
+        return G[table].buffer(slot).getInt(G[table].offset(slot) + 8);
+    }
+
+    public int getCacheValue(int table,int slot){
+        if(G == null) return 0;
+        return G[table].buffer(slot).getInt(G[table].offset(slot) + 12);
+    }
+
+    public void setCacheEntry(int table,int slot,long key,int aux,int value){
+        if(G == null) allocateCaches();
+        ByteBuffer buffer = G[table].buffer(slot);
+        int offset = G[table].offset(slot);
+        buffer.putLong(offset,key + 1);
+        buffer.putInt(offset + 8,aux);
+        buffer.putInt(offset + 12,value);
+    }
+
+    // allocateCaches : Allocates the computed tables, all entries empty
+    private void allocateCaches(){
+        G = new Segments[CACHES];
+        for(int t=0;t<CACHES;t++){
+            G[t] = new Segments(ENTRY_BYTES,cacheSize);
+            G[t].ensure(cacheSize);
+        }
+    }
+
+    // close : Releases the buffers. The store cannot be used afterwards
+    public void close(){
+        T.close();
+        H.close();
+        if(G != null) for(int t=0;t<CACHES;t++) G[t].close();
+    }
+
+    // Records of recordBytes bytes in direct ByteBuffer segments. A segment
+    // holds the given number of records rounded up to a power of 2, at most
+    // MAX_SEGMENT. New segments are zero filled.
+    private static class Segments{
+        private final int recordBytes;
+        private final int bits;
+        private final int mask;
+        private ByteBuffer[] segments = new ByteBuffer[0];
+        private long length;
+
+        Segments(int recordBytes,int records){
+            this.recordBytes = recordBytes;
+            int size = Math.min(MAX_SEGMENT,Math.max(records,2));
+            bits = 32 - Integer.numberOfLeadingZeros(size - 1);
+            mask = (1 << bits) - 1;
+        }
+
+        // ensure(n) : Makes records 0..n-1 valid
+        void ensure(long n){
+            if(segments == null)
+                throw new IllegalStateException("Node store has been closed");
+            while(length < n){
+                int k = (int) (length >>> bits);
+                if(k == segments.length)
+                    segments = Arrays.copyOf(segments,Math.max(4,2*k));
+                segments[k] = ByteBuffer.allocateDirect(recordBytes << bits)
+                                        .order(ByteOrder.nativeOrder());
+                length += 1L << bits;
+            }
+        }
+
+        // buffer(r), offset(r) : Segment of record r and its byte offset there
+        ByteBuffer buffer(int r){
+            return segments[r >>> bits];
+        }
+
+        int offset(int r){
+            return (r & mask) * recordBytes;
+        }
+
+        void close(){
+            segments = null;
+            length = 0;
+        }
+    }
+
+    // parity(bdd,n) : Builds x1 xor x2 xor ... xor xn with mk, returns its
+    // root
+    private static int parity(ROBDD bdd,int n){
+        int even = 0;
+        int odd = 1;
+        for(int i=n;i>=1;i--){
+            int e = bdd.mk(i,even,odd);
+            int o = bdd.mk(i,odd,even);
+            even = e;
+            odd = o;
+        }
+        return odd;
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDOffHeapStore implementation");
+        try(ROBDDOffHeapStore store = new ROBDDOffHeapStore(ROBDDConfig.DEFAULT)){
+            ROBDD test = new ROBDD(new ROBDDVariables(4),store);
+            String boolExp = "NOT(x1&&NOT(x2) || NOT(x1)&&x2)" +
+                             "&& NOT(x3&&NOT(x4) || NOT(x3)&&x4)";
+            test.build(boolExp,1);
+            test.print();
+            try{
+                test.getROBDDTable();
+            }catch(UnsupportedOperationException e){
+                System.out.println("getROBDDTable : " + e.getMessage());
+            }
+        }
+
+        // x1 xor x2 xor ... xor xn built with mk on both stores
+        int n = 2000;
+        ROBDDConfig config = new ROBDDConfig.Builder().initialNodeCapacity(4*n)
+                                                      .build();
+        try(ROBDDOffHeapStore store = new ROBDDOffHeapStore(config)){
+            ROBDD offHeap = new ROBDD(new ROBDDVariables(n),store);
+            ROBDD onHeap = new ROBDD(n,config);
+            int f = parity(offHeap,n);
+            int g = parity(onHeap,n);
+            System.out.println("Parity of " + n + " variables : "
+                               + offHeap.getNodeCount() + " nodes off-heap, "
+                               + onHeap.getNodeCount() + " on the heap, same root : "
+                               + (f == g));
+        }
+
+        // Same parity with a hard limit of 100 nodes
+        ROBDDConfig limited = new ROBDDConfig.Builder().maxNodes(100).build();
+        try(ROBDDOffHeapStore store = new ROBDDOffHeapStore(limited)){
+            ROBDD offHeap = new ROBDD(new ROBDDVariables(n),store);
+            parity(offHeap,n);
+        }catch(ROBDDNodeLimitException e){
+            System.out.println(e.getMessage());
+        }
+    }
+}
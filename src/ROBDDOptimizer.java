@@ -0,0 +1,482 @@
+/* =========================================================================== *
+ * File : ROBDDOptimizer.java                                                  *
+ * =========================================================================== *
+ * Class that searches a variable order giving the smallest ROBDD for one      *
+ * root, meant for ROBDDs that are optimized once and then shipped. It works   *
+ * on a copy of the nodes below the root, the original ROBDD is not changed.   *
+ * Sizes are computed without building the reordered ROBDD : with the set A of *
+ * variables above v, the nodes labelled v are the distinct cofactors of the   *
+ * root by assignments to A that depend on v. Hence the nodes of one level     *
+ * only depend on the variable and the set above it, not on the order above    *
+ * or below.                                                                   *
+ *     windowPermutation : tries every order of window adjacent variables,     *
+ *                         the windows of one pass being searched in parallel  *
+ *     exact             : dynamic programming over the sets of variables      *
+ *                         (Friedman and Supowit), for up to 20 variables      *
+ * Orders keep the groups of the registry together. Both searches stop once    *
+ * their time budget is spent.                                                 *
+ * Prime Methods : windowPermutation(window,budget), exact(budget)             *
+ *               : size(order), rebuild()                                      *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+import java.util.stream.IntStream;
+
+public class ROBDDOptimizer{
+
+    // Largest number of variables exact accepts
+    public static final int EXACT_MAX_VARIABLES = 20;
+
+    private ROBDDVariables variables;
+    private ROBDDConfig config;
+    // The nodes below the root, renumbered in index order. The root is the
+    // last node.
+    private int[][] nodes;
+    private int root;
+    // The support of the root, top first, and the position of each
+    // variable in it
+    private int[] support;
+    private int[] positionOf;
+    // groupMask[p] : positions in the support of the group of support[p]
+    private long[] groupMask;
+    private int[] best;
+    private int bestSize;
+
+    // Constructor. Copies the nodes of bdd below root
+    public ROBDDOptimizer(ROBDD bdd,int root){
+        this(bdd,root,ROBDDConfig.DEFAULT);
+    }
+
+    // Constructor. The copies the search works on are bounded by config
+    public ROBDDOptimizer(ROBDD bdd,int root,ROBDDConfig config){
+        this.variables = bdd.getVariables();
+        this.config = config;
+        int[][] T = bdd.getROBDDTable();
+        support = bdd.support(root);
+        positionOf = new int[variables.size() + 2];
+        Arrays.fill(positionOf,-1);
+        for(int p=0;p<support.length;p++) positionOf[support[p]] = p;
+
+        // Reachable nodes in increasing index order, children come first
+        TreeMap<Integer,Integer> renumber = new TreeMap<Integer,Integer>();
+        ArrayDeque<Integer> stack = new ArrayDeque<Integer>();
+        stack.push(root);
+        renumber.put(root,0);
+        while(!stack.isEmpty()){
+            int u = stack.pop();
+            if(u <= 1) continue;
+            for(int child : new int[]{T[u][1],T[u][2]}){
+                if(renumber.containsKey(child)) continue;
+                renumber.put(child,0);
+                stack.push(child);
+            }
+        }
+        renumber.put(0,0);
+        renumber.put(1,0);
+        nodes = new int[renumber.size()][];
+        int next = 0;
+        for(int u : renumber.keySet()) renumber.put(u,next++);
+        for(int u : renumber.keySet()){
+            int[] row = (u <= 1) ? new int[]{variables.size() + 1,-1,-1}
+                                 : new int[]{T[u][0],renumber.get(T[u][1]),
+                                             renumber.get(T[u][2])};
+            nodes[renumber.get(u)] = row;
+        }
+        this.root = renumber.get(root);
+
+        if(support.length > 64)
+            throw new IllegalArgumentException("More than 64 variables in the support");
+        groupMask = new long[support.length];
+        for(int p=0;p<support.length;p++){
+            int group = variables.groupOf(support[p]);
+            if(group == -1) continue;
+            for(int v : variables.getGroups().get(group))
+                if(positionOf[v] != -1) groupMask[p] |= 1L << positionOf[v];
+        }
+        best = support.clone();
+        bestSize = size(best);
+    }
+
+    // Getter-Setter Methods
+    // getOrder : Returns the best order found so far, the support variables
+    // from the top down
+    public int[] getOrder(){
+        return best.clone();
+    }
+
+    // getSize : Returns the number of nodes, terminals included, of the
+    // root under getOrder
+    public int getSize(){
+        return bestSize;
+    }
+
+    // Public Interface
+    // size(order) : Returns the number of nodes, terminals included, of the
+    // root with its support variables in the given order
+    public int size(int[] order){
+        Work work = new Work();
+        int[] cofactors = {root};
+        int size = terminals();
+        for(int v : order){
+            int[] width = new int[1];
+            cofactors = work.extend(cofactors,v,width);
+            size += width[0];
+        }
+        return size;
+    }
+
+    // windowPermutation(window,budgetMillis) : Improves the order by trying
+    // every permutation of window adjacent variables. Each pass splits the
+    // order into disjoint windows and searches them in parallel, passes
+    // shifting the windows until none improves. Returns the order.
+    public int[] windowPermutation(int window,long budgetMillis){
+        if(window < 2) throw new IllegalArgumentException("window < 2");
+        ROBDDCancelToken token = ROBDDCancelToken.withTimeout(budgetMillis);
+        int n = support.length;
+        window = Math.min(window,n);
+        int idle = 0;
+        int offset = 0;
+        try{
+            while(n > 1 && idle < window){
+                final int[] order = best.clone();
+                final int first = offset;
+                final int w = window;
+                int count = (n - first + w - 1)/w;
+                int[][] found = new int[count][];
+                // Windows are disjoint, so their improvements add up
+                IntStream.range(0,count).parallel().forEach(k ->
+                    found[k] = searchWindow(order,first + k*w,
+                                            Math.min(w,n - first - k*w),token));
+                int[] improved = order.clone();
+                boolean changed = false;
+                for(int k=0;k<count;k++){
+                    if(found[k] == null) continue;
+                    System.arraycopy(found[k],0,improved,first + k*w,found[k].length);
+                    changed = true;
+                }
+                if(changed){
+                    best = improved;
+                    bestSize = size(best);
+                    idle = 0;
+                }else{
+                    idle++;
+                }
+                offset = (offset + 1) % window;
+            }
+        }catch(ROBDDCancelledException e){
+            // Out of time : keep the best order so far
+        }
+        return getOrder();
+    }
+
+    // exact(budgetMillis) : Returns an order of the fewest nodes and makes it
+    // the best order, or null if the budget or the node limit of the config
+    // was reached first
+    public int[] exact(long budgetMillis){
+        int n = support.length;
+        if(n > EXACT_MAX_VARIABLES)
+            throw new IllegalArgumentException("exact supports at most "
+                                               + EXACT_MAX_VARIABLES + " variables");
+        ROBDDCancelToken token = ROBDDCancelToken.withTimeout(budgetMillis);
+        Work work = new Work();
+        // cost[S] : fewest nodes above the set S of positions, last[S] : the
+        // position placed last in such an order
+        int[] cost = new int[1 << n];
+        byte[] last = new byte[1 << n];
+        Arrays.fill(cost,Integer.MAX_VALUE);
+        cost[0] = 0;
+        HashMap<Integer,int[]> layer = new HashMap<Integer,int[]>();
+        layer.put(0,new int[]{root});
+        try{
+            for(int k=0;k<n;k++){
+                HashMap<Integer,int[]> nextLayer = new HashMap<Integer,int[]>();
+                for(Map.Entry<Integer,int[]> entry : layer.entrySet()){
+                    int set = entry.getKey();
+                    // Every remaining variable adds at least one node, so
+                    // sets that cannot beat the best order are dropped
+                    if(cost[set] + (n - k) + terminals() >= bestSize) continue;
+                    for(int p=0;p<n;p++){
+                        if((set & (1 << p)) != 0 || !allowed(set,p)) continue;
+                        token.check();
+                        int[] width = new int[1];
+                        int[] cofactors = work.extend(entry.getValue(),
+                                                              support[p],width);
+                        int grown = set | (1 << p);
+                        if(cost[set] + width[0] < cost[grown]){
+                            cost[grown] = cost[set] + width[0];
+                            last[grown] = (byte) p;
+                        }
+                        // The cofactors only depend on the set
+                        if(!nextLayer.containsKey(grown)) nextLayer.put(grown,cofactors);
+                    }
+                }
+                layer = nextLayer;
+            }
+        }catch(ROBDDCancelledException e){
+            return null;
+        }catch(ROBDDNodeLimitException e){
+            return null;
+        }
+        // Nothing beats the order already known
+        if(cost[(1 << n) - 1] == Integer.MAX_VALUE) return getOrder();
+        int[] order = new int[n];
+        int set = (1 << n) - 1;
+        for(int k=n-1;k>=0;k--){
+            order[k] = support[last[set]];
+            set &= ~(1 << last[set]);
+        }
+        best = order;
+        bestSize = cost[(1 << n) - 1] + terminals();
+        return getOrder();
+    }
+
+    // rebuild : Returns a new ROBDD holding only the root, with its support
+    // variables in the best order followed by the other variables. The root
+    // is the last node of the new ROBDD. Groups are not copied.
+    public ROBDD rebuild(){
+        ROBDDVariables ordered = new ROBDDVariables();
+        for(int v : best) ordered.declare(variables.nameOf(v));
+        for(int i=1;i<=variables.size();i++) ordered.declare(variables.nameOf(i));
+        // Translate with apply, which allows any order ...
+        ROBDD scratch = new ROBDD(ordered,config);
+        int[] translated = new int[nodes.length];
+        translated[0] = 0;
+        translated[1] = 1;
+        for(int u=2;u<nodes.length;u++){
+            int x = ordered.indexOf(variables.nameOf(nodes[u][0]));
+            int l = translated[nodes[u][1]];
+            int h = translated[nodes[u][2]];
+            translated[u] = scratch.apply(ROBDD.OR,
+                                          scratch.apply(ROBDD.AND,scratch.mk(x,0,1),h),
+                                          scratch.apply(ROBDD.AND,scratch.mk(x,1,0),l));
+        }
+        // ... then copy the nodes below the root, children first
+        int[][] T = scratch.getROBDDTable();
+        int top = translated[root];
+        boolean[] reachable = new boolean[scratch.getNodeCount()];
+        reachable[top] = true;
+        for(int u=top;u>1;u--){
+            if(!reachable[u]) continue;
+            reachable[T[u][1]] = true;
+            reachable[T[u][2]] = true;
+        }
+        ROBDD result = new ROBDD(ordered,config);
+        int[] copied = new int[scratch.getNodeCount()];
+        copied[1] = 1;
+        for(int u=2;u<=top;u++)
+            if(reachable[u]) copied[u] = result.mk(T[u][0],copied[T[u][1]],copied[T[u][2]]);
+        return result;
+    }
+
+    // Private Implementation
+    // Number of terminals below the root
+    private int terminals(){
+        return (root <= 1) ? 1 : 2;
+    }
+
+    // allowed(set,p) : Returns whether position p may be placed below the
+    // set : a group that is started has to be finished first
+    private boolean allowed(long set,int p){
+        for(int q=0;q<support.length;q++){
+            long group = groupMask[q];
+            if(group == 0 || (set & (1L << q)) == 0) continue;
+            if((set & group) != group && (group & (1L << p)) == 0) return false;
+        }
+        return true;
+    }
+
+    // searchWindow(order,start,w,token) : Returns the best permutation of
+    // order[start..start+w-1], null if none beats the current one
+    private int[] searchWindow(int[] order,int start,int w,ROBDDCancelToken token){
+        if(w < 2) return null;
+        Work work = new Work();
+        int[] cofactors = {root};
+        long above = 0;
+        int[] width = new int[1];
+        for(int k=0;k<start;k++){
+            cofactors = work.extend(cofactors,order[k],width);
+            above |= 1L << positionOf[order[k]];
+        }
+        int[] current = Arrays.copyOfRange(order,start,start + w);
+        int currentCost = 0;
+        int[] scan = cofactors;
+        for(int v : current){
+            scan = work.extend(scan,v,width);
+            currentCost += width[0];
+        }
+        WindowSearch search = new WindowSearch(work,current,token);
+        search.bestCost = currentCost;
+        search.permute(cofactors,above,0,0);
+        return search.bestPermutation;
+    }
+
+    // Depth first search of the permutations of one window, with pruning on
+    // the cost so far
+    private class WindowSearch{
+        private Work work;
+        private int[] window;
+        private ROBDDCancelToken token;
+        private int[] permutation;
+        private boolean[] used;
+        int bestCost;
+        int[] bestPermutation;
+
+        WindowSearch(Work work,int[] window,ROBDDCancelToken token){
+            this.work = work;
+            this.window = window;
+            this.token = token;
+            permutation = new int[window.length];
+            used = new boolean[window.length];
+        }
+
+        void permute(int[] cofactors,long above,int depth,int cost){
+            if(cost >= bestCost) return;
+            if(depth == window.length){
+                bestCost = cost;
+                bestPermutation = permutation.clone();
+                return;
+            }
+            token.check();
+            for(int k=0;k<window.length;k++){
+                if(used[k]) continue;
+                int p = positionOf[window[k]];
+                if(!allowed(above,p)) continue;
+                int[] width = new int[1];
+                int[] grown = work.extend(cofactors,window[k],width);
+                used[k] = true;
+                permutation[depth] = window[k];
+                permute(grown,above | (1L << p),depth + 1,cost + width[0]);
+                used[k] = false;
+            }
+        }
+    }
+
+    // Private copy of the nodes, with the cofactors computed on it. Each
+    // thread uses its own, in an ROBDD with a registry of its own, so that
+    // searches running in parallel never attach to the registry of the
+    // caller.
+    private class Work{
+        private ROBDD bdd;
+        // Cofactors computed so far, open addressing on (u,v,val). Keys are
+        // stored plus one so that 0 marks an empty slot
+        private long[] memoKey = new long[1024];
+        private int[] memoValue = new int[1024];
+        private int memoCount;
+        // Nodes already in the result of extend : stamp[u] == epoch
+        private int[] stamp = new int[0];
+        private int epoch;
+        private int[] buffer = new int[16];
+
+        Work(){
+            bdd = new ROBDD(variables.size(),config);
+            for(int u=2;u<nodes.length;u++) bdd.mk(nodes[u][0],nodes[u][1],nodes[u][2]);
+        }
+
+        // extend(cofactors,v,width) : Returns the distinct cofactors of the
+        // given ones by v, and sets width[0] to the number of them that
+        // depend on v
+        int[] extend(int[] cofactors,int v,int[] width){
+            width[0] = 0;
+            epoch++;
+            int size = 0;
+            for(int g : cofactors){
+                int g0 = cofactor(g,v,0);
+                int g1 = cofactor(g,v,1);
+                if(g0 != g1) width[0]++;
+                size = collect(g0,size);
+                size = collect(g1,size);
+            }
+            return Arrays.copyOf(buffer,size);
+        }
+
+        // collect(u,size) : Appends u to buffer unless terminal or already there
+        private int collect(int u,int size){
+            if(u <= 1) return size;
+            if(u >= stamp.length) stamp = Arrays.copyOf(stamp,Math.max(2*u,1024));
+            if(stamp[u] == epoch) return size;
+            stamp[u] = epoch;
+            if(size == buffer.length) buffer = Arrays.copyOf(buffer,2*size);
+            buffer[size] = u;
+            return size + 1;
+        }
+
+        // cofactor(u,v,val) : Returns u with variable v set to val
+        int cofactor(int u,int v,int val){
+            int[][] T = bdd.getROBDDTable();
+            if(T[u][0] > v) return u;
+            if(T[u][0] == v) return T[u][1 + val];
+            long key = ((long) u << 32) | ((long) v << 1) | val;
+            int mask = memoKey.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while(memoKey[slot] != 0){
+                if(memoKey[slot] == key + 1) return memoValue[slot];
+                slot = (slot + 1) & mask;
+            }
+            int var = T[u][0];
+            int low = T[u][1];
+            int high = T[u][2];
+            int r = bdd.mk(var,cofactor(low,v,val),cofactor(high,v,val));
+            remember(key,r);
+            return r;
+        }
+
+        private void remember(long key,int value){
+            if(2*(memoCount + 1) > memoKey.length){
+                long[] oldKey = memoKey;
+                int[] oldValue = memoValue;
+                memoKey = new long[2*oldKey.length];
+                memoValue = new int[2*oldKey.length];
+                memoCount = 0;
+                for(int k=0;k<oldKey.length;k++)
+                    if(oldKey[k] != 0) remember(oldKey[k] - 1,oldValue[k]);
+            }
+            int mask = memoKey.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+            while(memoKey[slot] != 0) slot = (slot + 1) & mask;
+            memoKey[slot] = key + 1;
+            memoValue[slot] = value;
+            memoCount++;
+        }
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDOptimizer implementation");
+        // a1 b1 + a2 b2 + ... with all a above all b : 2^(n+1) nodes, while
+        // a1 b1 a2 b2 ... gives 2n + 2
+        int n = 8;
+        ROBDD bdd = new ROBDD(0);
+        for(int i=1;i<=n;i++) bdd.declare("a" + i);
+        for(int i=1;i<=n;i++) bdd.declare("b" + i);
+        StringBuilder exp = new StringBuilder();
+        for(int i=1;i<=n;i++){
+            if(i > 1) exp.append(" | ");
+            exp.append("a").append(i).append(" & b").append(i);
+        }
+        int root = bdd.build(ROBDDExpression.parse(exp.toString()));
+        ROBDDOptimizer optimizer = new ROBDDOptimizer(bdd,root);
+        System.out.println("Initial order : " + optimizer.getSize() + " nodes");
+
+        long start = System.nanoTime();
+        optimizer.windowPermutation(3,1000);
+        System.out.println("Window permutation (3) : " + optimizer.getSize()
+                           + " nodes, " + (System.nanoTime() - start)/1000000 + " ms");
+        start = System.nanoTime();
+        optimizer.windowPermutation(4,1000);
+        System.out.println("Window permutation (4) : " + optimizer.getSize()
+                           + " nodes, " + (System.nanoTime() - start)/1000000 + " ms");
+        start = System.nanoTime();
+        int[] order = optimizer.exact(10000);
+        System.out.println("Exact : " + optimizer.getSize() + " nodes, "
+                           + (System.nanoTime() - start)/1000000 + " ms");
+        StringBuilder names = new StringBuilder();
+        for(int v : order) names.append(bdd.getVariables().nameOf(v)).append(" ");
+        System.out.println("Order : " + names);
+
+        ROBDD shipped = optimizer.rebuild();
+        System.out.println("Rebuilt table : " + shipped.getNodeCount() + " nodes");
+    }
+}
@@ -0,0 +1,328 @@
+/* =========================================================================== *
+ * File : ROBDDOrdering.java                                                   *
+ * =========================================================================== *
+ * Class of static variable ordering heuristics, computed from the structure   *
+ * of an ROBDDExpression before anything is built. Each heuristic returns the  *
+ * variable names from the top of the order down. The order is applied by      *
+ * declaring the names in that order in the registry of the ROBDD, before      *
+ * building the expression :                                                   *
+ *     ROBDD bdd = new ROBDD(ROBDDOrdering.registry(order),config);            *
+ *     int root = bdd.build(e);                                                *
+ * Heuristics :                                                                *
+ *     fanIn     : depth first from the root, deepest operand first, each      *
+ *                 variable taking the position where it is first reached      *
+ *     force     : FORCE, moving each variable to the centre of gravity of the *
+ *                 clauses (conjuncts of the top level AND) it occurs in       *
+ *     interleave: bits i of the vectors name[i] next to each other            *
+ * Prime Methods : fanIn(e), force(e), interleave(e), interleave(vectors)      *
+ *               : registry(order), declare(variables,order)                   *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ROBDDOrdering{
+
+    // Number of FORCE iterations without improvement after which it stops
+    private static final int FORCE_PATIENCE = 3;
+    private static final int FORCE_MAX_ITERATIONS = 100;
+
+    private ROBDDOrdering(){
+    }
+
+    // Public Interface
+    // fanIn(e) : Returns the variables in depth first order from the root,
+    // the operand with the deeper subexpression being visited first
+    public static String[] fanIn(ROBDDExpression e){
+        int count = e.getNodeCount();
+        // Depth of every DAG node. Operands have smaller indices.
+        int[] depth = new int[count];
+        for(int k=0;k<count;k++){
+            int op = e.getOp(k);
+            if(op == ROBDDExpression.CONST || op == ROBDDExpression.VAR) continue;
+            depth[k] = 1 + depth[e.getLeft(k)];
+            if(op != ROBDDExpression.NOT)
+                depth[k] = Math.max(depth[k],1 + depth[e.getRight(k)]);
+        }
+        // Iterative, expressions can be far deeper than the Java stack
+        boolean[] seen = new boolean[count];
+        boolean[] placed = new boolean[e.getVariableCount()];
+        String[] order = new String[e.getVariableCount()];
+        int size = 0;
+        int[] stack = new int[count + 1];
+        int top = 0;
+        stack[top++] = e.getRoot();
+        while(top > 0){
+            int k = stack[--top];
+            if(seen[k]) continue;
+            seen[k] = true;
+            int op = e.getOp(k);
+            if(op == ROBDDExpression.CONST) continue;
+            if(op == ROBDDExpression.VAR){
+                int id = e.getLeft(k);
+                if(!placed[id]){
+                    placed[id] = true;
+                    order[size++] = e.getVariableName(id);
+                }
+                continue;
+            }
+            if(op == ROBDDExpression.NOT){
+                stack[top++] = e.getLeft(k);
+                continue;
+            }
+            // Pushed last is visited first : the deeper operand
+            int l = e.getLeft(k);
+            int r = e.getRight(k);
+            if(depth[l] >= depth[r]){
+                stack[top++] = r;
+                stack[top++] = l;
+            }else{
+                stack[top++] = l;
+                stack[top++] = r;
+            }
+        }
+        return order;
+    }
+
+    // force(e) : Returns the order found by FORCE on the hypergraph whose
+    // edges are the conjuncts of the top level AND of e, a CNF being one
+    // edge per clause. Starts from fanIn(e) and keeps the order with the
+    // smallest total edge span.
+    public static String[] force(ROBDDExpression e){
+        int n = e.getVariableCount();
+        int[][] edges = clauses(e);
+        // edgesOf[v] : edges variable v occurs in
+        int[] degree = new int[n];
+        for(int[] edge : edges) for(int v : edge) degree[v]++;
+        int[][] edgesOf = new int[n][];
+        for(int v=0;v<n;v++) edgesOf[v] = new int[degree[v]];
+        Arrays.fill(degree,0);
+        for(int j=0;j<edges.length;j++)
+            for(int v : edges[j]) edgesOf[v][degree[v]++] = j;
+
+        // position[v] : place of variable v in the order
+        int[] position = new int[n];
+        String[] start = fanIn(e);
+        for(int p=0;p<n;p++) position[e.getVariableId(start[p])] = p;
+        int[] best = position.clone();
+        long bestSpan = span(edges,position);
+        double[] gravity = new double[edges.length];
+        double[] target = new double[n];
+        Integer[] byTarget = new Integer[n];
+        int idle = 0;
+        for(int iteration=0;iteration<FORCE_MAX_ITERATIONS && idle<FORCE_PATIENCE;iteration++){
+            for(int j=0;j<edges.length;j++){
+                double sum = 0;
+                for(int v : edges[j]) sum += position[v];
+                gravity[j] = sum/edges[j].length;
+            }
+            for(int v=0;v<n;v++){
+                if(edgesOf[v].length == 0){
+                    target[v] = position[v];
+                    continue;
+                }
+                double sum = 0;
+                for(int j : edgesOf[v]) sum += gravity[j];
+                target[v] = sum/edgesOf[v].length;
+            }
+            for(int v=0;v<n;v++) byTarget[v] = v;
+            final double[] t = target;
+            final int[] current = position;
+            Arrays.sort(byTarget,(a,b) -> (t[a] != t[b]) ? Double.compare(t[a],t[b])
+                                                         : Integer.compare(current[a],current[b]));
+            int[] moved = new int[n];
+            for(int p=0;p<n;p++) moved[byTarget[p]] = p;
+            position = moved;
+            long total = span(edges,position);
+            if(total < bestSpan){
+                bestSpan = total;
+                best = position.clone();
+                idle = 0;
+            }else{
+                idle++;
+            }
+        }
+        String[] order = new String[n];
+        for(int v=0;v<n;v++) order[best[v]] = e.getVariableName(v);
+        return order;
+    }
+
+    // interleave(e) : Returns the variables of e with the vectors interleaved.
+    // A vector is the set of variables name[i] sharing name, and bit i of
+    // every vector comes before bit i+1 of any. Other variables come first,
+    // vectors are taken in order of first appearance in e.
+    public static String[] interleave(ROBDDExpression e){
+        ArrayList<String> scalars = new ArrayList<String>();
+        LinkedHashMap<String,TreeMap<Integer,String>> vectors
+            = new LinkedHashMap<String,TreeMap<Integer,String>>();
+        for(int v=0;v<e.getVariableCount();v++){
+            String name = e.getVariableName(v);
+            int open = name.lastIndexOf('[');
+            int bit = -1;
+            if(open > 0 && name.endsWith("]")){
+                try{
+                    bit = Integer.parseInt(name.substring(open + 1,name.length() - 1));
+                }catch(NumberFormatException ex){
+                    bit = -1;
+                }
+            }
+            if(bit < 0){
+                scalars.add(name);
+                continue;
+            }
+            String base = name.substring(0,open);
+            if(!vectors.containsKey(base)) vectors.put(base,new TreeMap<Integer,String>());
+            vectors.get(base).put(bit,name);
+        }
+        ArrayList<String[]> bits = new ArrayList<String[]>();
+        for(TreeMap<Integer,String> vector : vectors.values())
+            bits.add(vector.values().toArray(new String[0]));
+        String[] interleaved = interleave(bits.toArray(new String[0][]));
+        String[] order = new String[scalars.size() + interleaved.length];
+        for(int k=0;k<scalars.size();k++) order[k] = scalars.get(k);
+        System.arraycopy(interleaved,0,order,scalars.size(),interleaved.length);
+        return order;
+    }
+
+    // interleave(vectors) : Returns vectors[0][0], vectors[1][0], ...,
+    // vectors[0][1], vectors[1][1], ... Shorter vectors are skipped once
+    // they run out.
+    public static String[] interleave(String[]... vectors){
+        int total = 0, longest = 0;
+        for(String[] vector : vectors){
+            total += vector.length;
+            longest = Math.max(longest,vector.length);
+        }
+        String[] order = new String[total];
+        int size = 0;
+        for(int i=0;i<longest;i++)
+            for(String[] vector : vectors)
+                if(i < vector.length) order[size++] = vector[i];
+        return order;
+    }
+
+    // registry(order) : Returns a new registry declaring the names in order
+    public static ROBDDVariables registry(String[] order){
+        ROBDDVariables variables = new ROBDDVariables();
+        declare(variables,order);
+        return variables;
+    }
+
+    // declare(variables,order) : Declares the names in order below the
+    // variables already in the registry. Known names keep their place.
+    public static void declare(ROBDDVariables variables,String[] order){
+        for(String name : order) variables.declare(name);
+    }
+
+    // Private Implementation
+    // clauses(e) : Returns the variable ids of every conjunct of the top
+    // level AND of e
+    private static int[][] clauses(ROBDDExpression e){
+        ArrayList<int[]> edges = new ArrayList<int[]>();
+        int[] mark = new int[e.getNodeCount()];
+        int[] seenVar = new int[e.getVariableCount()];
+        int epoch = 0;
+        int[] conjuncts = new int[e.getNodeCount() + 1];
+        int[] stack = new int[e.getNodeCount() + 1];
+        int top = 0, found = 0;
+        boolean[] split = new boolean[e.getNodeCount()];
+        stack[top++] = e.getRoot();
+        while(top > 0){
+            int k = stack[--top];
+            if(split[k]) continue;
+            split[k] = true;
+            if(e.getOp(k) == ROBDDExpression.AND){
+                stack[top++] = e.getRight(k);
+                stack[top++] = e.getLeft(k);
+            }else{
+                conjuncts[found++] = k;
+            }
+        }
+        int[] vars = new int[e.getVariableCount()];
+        for(int c=0;c<found;c++){
+            epoch++;
+            int size = 0;
+            top = 0;
+            stack[top++] = conjuncts[c];
+            while(top > 0){
+                int k = stack[--top];
+                if(mark[k] == epoch) continue;
+                mark[k] = epoch;
+                int op = e.getOp(k);
+                if(op == ROBDDExpression.CONST) continue;
+                if(op == ROBDDExpression.VAR){
+                    int id = e.getLeft(k);
+                    if(seenVar[id] != epoch){
+                        seenVar[id] = epoch;
+                        vars[size++] = id;
+                    }
+                    continue;
+                }
+                stack[top++] = e.getLeft(k);
+                if(op != ROBDDExpression.NOT) stack[top++] = e.getRight(k);
+            }
+            if(size > 0) edges.add(Arrays.copyOf(vars,size));
+        }
+        return edges.toArray(new int[0][]);
+    }
+
+    // span(edges,position) : Sum over the edges of the distance between
+    // their first and last variable
+    private static long span(int[][] edges,int[] position){
+        long total = 0;
+        for(int[] edge : edges){
+            int low = Integer.MAX_VALUE, high = Integer.MIN_VALUE;
+            for(int v : edge){
+                low = Math.min(low,position[v]);
+                high = Math.max(high,position[v]);
+            }
+            total += high - low;
+        }
+        return total;
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDOrdering implementation");
+        // a = b for two vectors of n bits. The leading clause mentions all of
+        // a first, so the order of appearance puts a above b : 2^n nodes.
+        int n = 14;
+        StringBuilder exp = new StringBuilder("(");
+        for(int i=0;i<n;i++) exp.append("a[").append(i).append("] | ");
+        exp.append("b[0] | true)");
+        for(int i=0;i<n;i++)
+            exp.append(" & (a[").append(i).append("] <-> b[").append(i).append("])");
+        ROBDDExpression e = ROBDDExpression.parse(exp.toString());
+
+        ROBDD plain = new ROBDD(0);
+        System.out.println("Order of appearance : "
+                           + plain.nodeCount(plain.build(e)) + " nodes");
+        String[][] orders = {fanIn(e),force(e),interleave(e)};
+        String[] names = {"Fan-in DFS","FORCE","Interleaved"};
+        for(int k=0;k<orders.length;k++){
+            ROBDD bdd = new ROBDD(registry(orders[k]),ROBDDConfig.DEFAULT);
+            System.out.println(names[k] + " : " + bdd.nodeCount(bdd.build(e))
+                               + " nodes, order starts "
+                               + Arrays.toString(Arrays.copyOf(orders[k],4)));
+        }
+
+        // FORCE on a CNF of 3000 clauses, each over variables close to each
+        // other in a hidden order
+        int m = 300;
+        StringBuilder cnf = new StringBuilder();
+        for(int c=0;c<3000;c++){
+            int base = (c*7) % (m - 3);
+            if(c > 0) cnf.append(" & ");
+            cnf.append("(v").append((base*37) % m).append(" | !v")
+               .append(((base + 2)*37) % m).append(" | v")
+               .append(((base + 3)*37) % m).append(")");
+        }
+        ROBDDExpression clauses = ROBDDExpression.parse(cnf.toString());
+        String[] forced = force(clauses);
+        ROBDD bdd = new ROBDD(registry(forced),ROBDDConfig.DEFAULT);
+        System.out.println("CNF with FORCE order : "
+                           + bdd.nodeCount(bdd.build(clauses)) + " nodes");
+    }
+}
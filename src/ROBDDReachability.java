@@ -0,0 +1,442 @@
+/* =========================================================================== *
+ * File : ROBDDReachability.java                                               *
+ * =========================================================================== *
+ * Class that computes the states reachable in a transition system. States are *
+ * assignments to the current state variables of an ROBDD, and the transition  *
+ * relation is given as a list of partitions T1(x,x'),...,Tm(x,x') over the    *
+ * current and next state variables, the relation being their conjunction. The *
+ * image is computed with andExists, partition by partition, each current      *
+ * variable being quantified right after the last partition that uses it.      *
+ * Asynchronous systems are given as events instead, each event changing the   *
+ * state bits whose next variable it depends on and keeping the others. The    *
+ * relation is then the disjunction of the events (and of the conjunction of   *
+ * the partitions, if any). Reachability is a breadth first search on the      *
+ * frontier of new states, or chains the events, or saturates them bottom up.  *
+ * Under a frontier limit, breadth first search explores a subset of a large   *
+ * frontier (ROBDDApproximation) and keeps the rest for later iterations.      *
+ * Prime Methods : addPartition(relation), addEvent(relation), image(states)   *
+ *               : reach(init), reach(init,strategy)                           *
+ *               : getSteps(), getPeakNodes(), setFrontierLimit(nodes)         *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ROBDDReachability{
+
+    // Strategies of reach(init,strategy)
+    // BFS        : images of the whole frontier, one step at a time
+    // CHAINING   : each iteration applies the events one after the other, each
+    //              to the states reached so far
+    // SATURATION : events are grouped by their top variable. Groups are run
+    //              to a fixpoint from the bottom one up, starting over at the
+    //              bottom whenever a higher group adds states.
+    public enum Strategy{ BFS, CHAINING, SATURATION }
+
+    private ROBDD bdd;
+    private int[] current;
+    private int[] next;
+    // Renaming of the next state variables to the current ones
+    private int[] toCurrent;
+    private ArrayList<Integer> partitions = new ArrayList<Integer>();
+    // Schedule : order[j] is the j-th partition to conjoin, after which the
+    // variables of quantify[j] are quantified. null until computed.
+    private int[] order;
+    private int[] quantify;
+    // Events. eventCube[e] holds the current variables written by event e.
+    // The conjunction of the partitions, if any, is event events.size().
+    private ArrayList<Integer> events = new ArrayList<Integer>();
+    private int[] eventCube;
+    // groups : indices of the events sharing a top variable, bottom first
+    private int[][] groups;
+    private ArrayList<Step> steps = new ArrayList<Step>();
+    // Largest ROBDD met by the last reach, in nodes
+    private int peakNodes;
+    // Nodes of the ROBDD last passed to track
+    private int trackedNodes;
+    // Largest frontier explored at once by BFS, in nodes. 0 for no limit.
+    private int frontierLimit;
+    private ROBDDApproximation approximation;
+
+    // Constructor. current[k] and next[k] are the ROBDD variables of state
+    // bit k before and after a transition
+    public ROBDDReachability(ROBDD bdd,int[] current,int[] next){
+        if(current.length != next.length)
+            throw new IllegalArgumentException("current and next differ in length");
+        this.bdd = bdd;
+        this.current = current.clone();
+        this.next = next.clone();
+    }
+
+    // Getter-Setter Methods
+    // getSteps : Returns the statistics of the iterations of the last reach
+    public List<Step> getSteps(){
+        return Collections.unmodifiableList(steps);
+    }
+
+    // getPeakNodes : Returns the node count of the largest reached set,
+    // frontier, image or pending part of a frontier met by the last reach
+    public int getPeakNodes(){
+        return peakNodes;
+    }
+
+    // setFrontierLimit(nodes) : BFS frontiers of more nodes are explored a
+    // subset at a time, the remap under-approximation of the frontier within
+    // the limit. The states left out stay in the frontier, so the reached set
+    // is still exact. 0 removes the limit.
+    public void setFrontierLimit(int nodes){
+        frontierLimit = nodes;
+        approximation = (nodes > 0) ? new ROBDDApproximation(bdd) : null;
+    }
+
+    // Public Interface
+    // addPartition(relation) : Adds a conjunct of the transition relation
+    public void addPartition(int relation){
+        partitions.add(relation);
+        order = null;
+        eventCube = null;
+    }
+
+    // addEvent(relation) : Adds an event of an asynchronous system. The event
+    // writes the state bits whose next variable occurs in relation.
+    public void addEvent(int relation){
+        events.add(relation);
+        eventCube = null;
+    }
+
+    // image(states) : Returns the root of the states reachable from states in
+    // one transition, over the current state variables
+    public int image(int states){
+        if(eventCube == null) prepareEvents();
+        int successors = 0;
+        for(int e=0;e<eventCube.length;e++)
+            successors = bdd.apply(ROBDD.OR,successors,image(e,states));
+        return successors;
+    }
+
+    // reach(init) : Returns the root of the states reachable from init,
+    // using breadth first search. Each iteration adds one Step to getSteps.
+    public int reach(int init){
+        return reach(init,Strategy.BFS);
+    }
+
+    // reach(init,strategy) : Returns the root of the states reachable from
+    // init. Each iteration of the strategy adds one Step to getSteps, its
+    // frontier being the states the iteration added.
+    public int reach(int init,Strategy strategy){
+        if(eventCube == null) prepareEvents();
+        steps.clear();
+        peakNodes = 0;
+        int reached = track(init);
+        if(strategy == Strategy.BFS){
+            int frontier = init;
+            int frontierNodes = trackedNodes;
+            while(frontier != 0){
+                long start = System.nanoTime();
+                int explored = frontier;
+                if(frontierLimit > 0 && frontierNodes > frontierLimit)
+                    explored = approximation.remapUnderApprox(frontier,frontierLimit).root;
+                int pending = track(bdd.apply(ROBDD.AND,frontier,bdd.not(explored)));
+                int successors = track(image(explored));
+                int added = track(bdd.apply(ROBDD.AND,successors,bdd.not(reached)));
+                reached = track(bdd.apply(ROBDD.OR,reached,added));
+                frontier = track(bdd.apply(ROBDD.OR,added,pending));
+                frontierNodes = trackedNodes;
+                addStep(added,reached,start);
+            }
+        }else if(strategy == Strategy.CHAINING){
+            int before;
+            do{
+                long start = System.nanoTime();
+                before = reached;
+                for(int e=0;e<eventCube.length;e++)
+                    reached = track(bdd.apply(ROBDD.OR,reached,image(e,reached)));
+                addStep(bdd.apply(ROBDD.AND,reached,bdd.not(before)),reached,start);
+            }while(reached != before);
+        }else{
+            int g = 0;
+            while(g < groups.length){
+                long start = System.nanoTime();
+                int before = reached;
+                int previous;
+                do{
+                    previous = reached;
+                    for(int e : groups[g])
+                        reached = track(bdd.apply(ROBDD.OR,reached,image(e,reached)));
+                }while(reached != previous);
+                if(reached != before)
+                    addStep(bdd.apply(ROBDD.AND,reached,bdd.not(before)),reached,start);
+                // New states may enable the events of lower groups again
+                g = (reached != before && g > 0) ? 0 : g + 1;
+            }
+        }
+        return reached;
+    }
+
+    // countStates(states) : Returns the number of states in states, a set
+    // over the current state variables
+    public double countStates(int states){
+        int[][] T = bdd.getROBDDTable();
+        int vars = T[0][0] - 1;
+        HashMap<Integer,Double> memo = new HashMap<Integer,Double>();
+        double all = count(T,states,memo) * Math.pow(2,T[states][0] - 1);
+        return all / Math.pow(2,vars - current.length);
+    }
+
+    // Private Implementation
+    // image(e,states) : Returns the root of the successors of states by event
+    // e, the last event being the conjunction of the partitions
+    private int image(int e,int states){
+        if(e == events.size()){
+            if(order == null) schedule();
+            int product = states;
+            for(int j=0;j<order.length;j++)
+                product = track(bdd.andExists(product,order[j],quantify[j]));
+            return bdd.replace(product,toCurrent);
+        }
+        int product = track(bdd.andExists(states,events.get(e),eventCube[e]));
+        return bdd.replace(product,toCurrent);
+    }
+
+    // prepareEvents : Computes the variables written by each event, the
+    // renaming and the groups of events by top variable
+    private void prepareEvents(){
+        int vars = bdd.getVariables().size();
+        toCurrent = new int[vars + 1];
+        for(int i=0;i<=vars;i++) toCurrent[i] = i;
+        for(int k=0;k<next.length;k++) toCurrent[next[k]] = current[k];
+        int[] bitOfNext = new int[vars + 1];
+        Arrays.fill(bitOfNext,-1);
+        for(int k=0;k<next.length;k++) bitOfNext[next[k]] = k;
+
+        int count = events.size() + (partitions.isEmpty() ? 0 : 1);
+        eventCube = new int[count];
+        int[] top = new int[count];
+        for(int e=0;e<count;e++){
+            top[e] = vars + 1;
+            if(e == events.size()){
+                for(int relation : partitions){
+                    int[] support = bdd.support(relation);
+                    if(support.length > 0) top[e] = Math.min(top[e],support[0]);
+                }
+                continue;
+            }
+            int[] support = bdd.support(events.get(e));
+            if(support.length > 0) top[e] = support[0];
+            int[] written = new int[support.length];
+            int size = 0;
+            for(int i : support)
+                if(bitOfNext[i] != -1) written[size++] = current[bitOfNext[i]];
+            eventCube[e] = bdd.cube(Arrays.copyOf(written,size));
+        }
+
+        // Groups of equal top variable, the deepest first
+        TreeMap<Integer,ArrayList<Integer>> byTop
+            = new TreeMap<Integer,ArrayList<Integer>>(Collections.reverseOrder());
+        for(int e=0;e<count;e++){
+            if(!byTop.containsKey(top[e])) byTop.put(top[e],new ArrayList<Integer>());
+            byTop.get(top[e]).add(e);
+        }
+        groups = new int[byTop.size()][];
+        int g = 0;
+        for(ArrayList<Integer> group : byTop.values()){
+            groups[g] = new int[group.size()];
+            for(int k=0;k<group.size();k++) groups[g][k] = group.get(k);
+            g++;
+        }
+    }
+
+    // track(u) : Updates peakNodes with the ROBDD at u, returns u. Its node
+    // count is left in trackedNodes
+    private int track(int u){
+        trackedNodes = bdd.nodeCount(u);
+        peakNodes = Math.max(peakNodes,trackedNodes);
+        return u;
+    }
+
+    private void addStep(int frontier,int reached,long start){
+        long micros = (System.nanoTime() - start)/1000;
+        steps.add(new Step(steps.size() + 1,bdd.nodeCount(frontier),
+                           countStates(frontier),bdd.nodeCount(reached),
+                           countStates(reached),micros));
+    }
+
+    // schedule : Orders the partitions and picks the variables to quantify
+    // after each of them. The next partition is the one after which the most
+    // current variables can be quantified, the smallest support breaking
+    // ties.
+    private void schedule(){
+        int vars = bdd.getVariables().size();
+        int m = partitions.size();
+        boolean[] isCurrent = new boolean[vars + 1];
+        for(int k=0;k<current.length;k++) isCurrent[current[k]] = true;
+
+        // uses[i] : number of remaining partitions depending on variable i
+        int[][] support = new int[m][];
+        int[] uses = new int[vars + 1];
+        for(int j=0;j<m;j++){
+            support[j] = bdd.support(partitions.get(j));
+            for(int i : support[j]) uses[i]++;
+        }
+        order = new int[m];
+        quantify = new int[m];
+        boolean[] done = new boolean[m];
+        for(int step=0;step<m;step++){
+            int best = -1, bestFreed = -1;
+            for(int j=0;j<m;j++){
+                if(done[j]) continue;
+                int freed = 0;
+                for(int i : support[j]) if(isCurrent[i] && uses[i] == 1) freed++;
+                if(freed > bestFreed || (freed == bestFreed
+                                         && support[j].length < support[best].length)){
+                    best = j;
+                    bestFreed = freed;
+                }
+            }
+            done[best] = true;
+            ArrayList<Integer> cubeVars = new ArrayList<Integer>();
+            for(int i : support[best]){
+                uses[i]--;
+                if(isCurrent[i] && uses[i] == 0) cubeVars.add(i);
+            }
+            // Variables no partition depends on go with the first one
+            if(step == 0){
+                for(int i=1;i<=vars;i++)
+                    if(isCurrent[i] && uses[i] == 0 && !cubeVars.contains(i))
+                        cubeVars.add(i);
+            }
+            order[step] = partitions.get(best);
+            int[] cube = new int[cubeVars.size()];
+            for(int k=0;k<cube.length;k++) cube[k] = cubeVars.get(k);
+            quantify[step] = bdd.cube(cube);
+        }
+    }
+
+    // Returns the number of assignments to the variables from var(u) on
+    private double count(int[][] T,int u,HashMap<Integer,Double> memo){
+        if(u <= 1) return u;
+        Double known = memo.get(u);
+        if(known != null) return known;
+        int l = T[u][1];
+        int h = T[u][2];
+        double c = count(T,l,memo) * Math.pow(2,T[l][0] - T[u][0] - 1)
+                 + count(T,h,memo) * Math.pow(2,T[h][0] - T[u][0] - 1);
+        memo.put(u,c);
+        return c;
+    }
+
+    // Statistics of one iteration of reach
+    public static class Step{
+        public final int iteration;
+        public final int frontierNodes;
+        public final double frontierStates;
+        public final int reachedNodes;
+        public final double reachedStates;
+        public final long micros;
+
+        Step(int iteration,int frontierNodes,double frontierStates,
+             int reachedNodes,double reachedStates,long micros){
+            this.iteration = iteration;
+            this.frontierNodes = frontierNodes;
+            this.frontierStates = frontierStates;
+            this.reachedNodes = reachedNodes;
+            this.reachedStates = reachedStates;
+            this.micros = micros;
+        }
+
+        public String toString(){
+            return "Iteration " + iteration + " : frontier " + frontierNodes
+                   + " nodes, " + (long) frontierStates + " states; reached "
+                   + reachedNodes + " nodes, " + (long) reachedStates
+                   + " states; " + micros + " us";
+        }
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDReachability implementation");
+        // A line of n cells : the first cell changes freely, any other cell
+        // may only switch on if it or its left neighbour is on, and cells
+        // switch off freely. From all cells off, the k-th iteration reaches
+        // the states whose rightmost on cell is the k-th, 2^n states in all.
+        int n = 24;
+        ROBDD bdd = new ROBDD(0);
+        int[] current = new int[n];
+        int[] next = new int[n];
+        // Interleaved order : each current variable above its next one
+        for(int k=0;k<n;k++){
+            current[k] = bdd.declare("s[" + k + "]");
+            next[k] = bdd.declare("next.s[" + k + "]");
+        }
+        ROBDDReachability reach = new ROBDDReachability(bdd,current,next);
+        for(int k=1;k<n;k++){
+            reach.addPartition(bdd.build(ROBDDExpression.parse(
+                "next.s[" + k + "] -> s[" + k + "] | s[" + (k-1) + "]")));
+        }
+        StringBuilder init = new StringBuilder("!s[0]");
+        for(int k=1;k<n;k++) init.append(" & !s[").append(k).append("]");
+
+        long start = System.nanoTime();
+        int reached = reach.reach(bdd.build(ROBDDExpression.parse(init.toString())));
+        long millis = (System.nanoTime() - start)/1000000;
+        for(Step step : reach.getSteps()) System.out.println(step);
+        System.out.println("Reached " + (long) reach.countStates(reached)
+                           + " states in " + millis + " ms, "
+                           + bdd.getNodeCount() + " nodes in the ROBDD");
+        // Again from the states with exactly one cell on, exploring at most
+        // 20 frontier nodes at a time
+        StringBuilder one = new StringBuilder("0");
+        for(int k=0;k<n;k++){
+            one.append(" | s[").append(k).append("]");
+            for(int j=0;j<n;j++)
+                if(j != k) one.append(" & !s[").append(j).append("]");
+        }
+        int onlyOne = bdd.build(ROBDDExpression.parse(one.toString()));
+        reach.setFrontierLimit(20);
+        start = System.nanoTime();
+        reached = reach.reach(onlyOne);
+        millis = (System.nanoTime() - start)/1000000;
+        System.out.println("Frontier limit 20 : " + reach.getSteps().size()
+                           + " iterations, " + (long) reach.countStates(reached)
+                           + " states, peak " + reach.getPeakNodes() + " nodes, "
+                           + millis + " ms");
+        reach.setFrontierLimit(0);
+        reached = reach.reach(onlyOne);
+        System.out.println("No frontier limit : " + reach.getSteps().size()
+                           + " iterations, " + (long) reach.countStates(reached)
+                           + " states, peak " + reach.getPeakNodes() + " nodes");
+
+        // The same line as an asynchronous system : one event toggles the
+        // first cell, and per other cell one event switches it on when its
+        // left neighbour is on and one switches it off
+        n = 32;
+        for(Strategy strategy : Strategy.values()){
+            ROBDD async = new ROBDD(0);
+            current = new int[n];
+            next = new int[n];
+            for(int k=0;k<n;k++){
+                current[k] = async.declare("s[" + k + "]");
+                next[k] = async.declare("next.s[" + k + "]");
+            }
+            ROBDDReachability line = new ROBDDReachability(async,current,next);
+            line.addEvent(async.build(ROBDDExpression.parse("next.s[0] <-> !s[0]")));
+            for(int k=1;k<n;k++){
+                line.addEvent(async.build(ROBDDExpression.parse(
+                    "s[" + (k-1) + "] & next.s[" + k + "]")));
+                line.addEvent(async.build(ROBDDExpression.parse("!next.s[" + k + "]")));
+            }
+            int allOff = 1;
+            for(int k=n-1;k>=0;k--) allOff = async.mk(current[k],allOff,0);
+            start = System.nanoTime();
+            reached = line.reach(allOff,strategy);
+            millis = (System.nanoTime() - start)/1000000;
+            System.out.println(strategy + " : " + line.getSteps().size()
+                               + " iterations, " + (long) line.countStates(reached)
+                               + " states, peak " + line.getPeakNodes() + " nodes, "
+                               + async.getNodeCount() + " nodes created, "
+                               + millis + " ms");
+        }
+    }
+}
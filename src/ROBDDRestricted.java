@@ -4,6 +4,7 @@
  * Class that instansiates an ROBDD Data Structure which can be restricted to  *
  * contain only certain nodes depending on Boolean values of certain vars.     *
  * Prime Methods : restrict(ROBDD,variable,value)                              * 
+ *               : constrain(ROBDD,care ROBDD), restrict(ROBDD,care ROBDD)     *
  *               : print()                                                     *
  * The current object will be the restricted ROBDD.                            *
  * =========================================================================== */
@@ -20,32 +21,41 @@ public class ROBDDRestricted{
     private int[] H;
     private int nodeCount;   
     private int capacity;
+    private double growthFactor;
+    private int nodeLimit;
     private int vars;
     private int restrictVar;
     private int restrictVal;
-    private int[] R;
+    // Nodes of TUR already restricted, and their node in T
+    private HashMap<Integer,Integer> R;
+    // Computed table of constrain and restrict by a care set
+    private HashMap<Long,Integer> G;
     
     // Constructor. Equivalent to the init(T),init(H) method in Notes 
     // Here n is the number of variables.
     public ROBDDRestricted(int n){
+        this(n,ROBDDConfig.DEFAULT);
+    }
+    
+    // Constructor. Sizes and grows the tables as given by config
+    public ROBDDRestricted(int n,ROBDDConfig config){
         // Initializing T to contain 0 and 1
         nodeCount = 0;
-        capacity = n;
+        capacity = Math.max(2,Math.min(config.getInitialNodeCapacity(),
+                                       config.getNodeLimit()));
         vars = n;
-        T = new int[capacity][3];
-       
+        growthFactor = config.getGrowthFactor();
+        nodeLimit = Math.min(config.getNodeLimit(),ROBDDNodeStore.MAX_NODES);
+        T = new int[capacity][];
+        
         // Adding 0 and 1 node. -1 indicates NULL.
-        T[0][0] = n+1;
-        T[0][1] = -1;
-        T[0][2] = -1;
-        T[1][0] = n+1;
-        T[1][1] = -1;
-        T[1][2] = -1;
+        T[0] = new int[]{n+1,-1,-1};
+        T[1] = new int[]{n+1,-1,-1};
         nodeCount += 2;
         
-        // Initializing H 
-        H = new int[capacity];
-        for(int i=0;i<capacity;i++)
+        // Initializing H. Open addressing, the size is a power of 2
+        H = new int[config.getUniqueTableSize()];
+        for(int i=0;i<H.length;i++)
             H[i] = -1; 
     }
    
@@ -56,14 +66,13 @@ public class ROBDDRestricted{
         // Return in case the node is redundant
         if(l == h){
             return l;            
-        }else if(member(i,l,h)){
-            return lookup(i,l,h);
-        }else{ 
-            int node = add(i,l,h);
+        }
+        int node = lookup(i,l,h);
+        if(node == -1){ 
+            node = add(i,l,h);
             insert(i,l,h,node);
-            return node;
         }
-            
+        return node;
     } 
     
     // print : Prints the table T and H. Useful for debugging
@@ -81,131 +90,224 @@ public class ROBDDRestricted{
     }   
     
     // restrict(ROBDD,var,val) : restricts the given ROBDD, and constructs 
-    // current ROBDD as the restricted ROBDD
-    public void restrict(ROBDD u,int var,int val){
+    // current ROBDD as the restricted ROBDD. Returns its root. Only the
+    // nodes visited are remembered; for repeated restricts of the same
+    // ROBDD, ROBDD.restrict shares a cache across calls.
+    public int restrict(ROBDD u,int var,int val){
         TUR = u.getROBDDTable();
         TURNodeCount = u.getNodeCount();
         restrictVar = var;
         restrictVal = val;
-        R = new int[TURNodeCount];
-        for(int i=0;i<TURNodeCount;i++)
-            R[i] = -1;
+        R = new HashMap<Integer,Integer>();
         // Passing in the root node
-        res(TURNodeCount-1);
-        
+        return res(TURNodeCount-1);
     }
     
+    // Returns the node of T for the restricted node of TUR
     private int res(int node){
-        if(alreadyRestricted(node)) return node; 
+        if(node == 0 || node == 1) return node;
+        if(alreadyRestricted(node)) return R.get(node);
+        int result;
         if(TUR[node][0]>restrictVar){
-            buildROBDD(node); 
-            R[node] = 1;
-            return node;   
+            result = buildROBDD(node);
         }else if(TUR[node][0]<restrictVar){
-            R[node] = 1;
-            return mk(TUR[node][0],res(TUR[node][1]),res(TUR[node][2]));
+            result = mk(TUR[node][0],res(TUR[node][1]),res(TUR[node][2]));
+        }else if(restrictVal == 0){
+            result = res(TUR[node][1]);
         }else{
-            if(restrictVal == 0){
-                R[node] = 1;
-                return res(TUR[node][1]);
-            }else{
-                R[node] = 1;
-                return res(TUR[node][2]);
-            }
+            result = res(TUR[node][2]);
         }
+        R.put(node,result);
+        return result;
     }
     
-    private void buildROBDD(int root){
-        if(root == 0 || root == 1) return; 
+    // Copies the nodes of TUR below root into T, returns the copy of root
+    private int buildROBDD(int root){
+        if(root == 0 || root == 1) return root;
+        if(alreadyRestricted(root)) return R.get(root);
         int i = TUR[root][0];
-        int l = TUR[root][1];
-        int h = TUR[root][2];
-        buildROBDD(l);
-        buildROBDD(h);
-        mk(i,l,h);
+        int l = buildROBDD(TUR[root][1]);
+        int h = buildROBDD(TUR[root][2]);
+        int result = mk(i,l,h);
+        R.put(root,result);
+        return result;
     }
     
     private boolean alreadyRestricted(int node){
-        return R[node] != -1;
+        return R.containsKey(node);
+    }
+    
+    // constrain(f,c) : Builds the generalized cofactor of f by the care set c
+    // (Coudert-Madre) in the current ROBDD and returns its root. The result
+    // agrees with f wherever c is 1.
+    public int constrain(ROBDD f,ROBDD c){
+        int rf = copy(f);
+        int rc = copy(c);
+        G = new HashMap<Long,Integer>();
+        return con(rf,rc);
+    }
+    
+    // restrict(f,c) : Builds f minimized with respect to the care set c
+    // (Coudert-Madre restrict) in the current ROBDD and returns its root.
+    // Unlike constrain, variables c depends on but f does not are
+    // quantified out of c, so the result never depends on more variables
+    // than f.
+    public int restrict(ROBDD f,ROBDD c){
+        int rf = copy(f);
+        int rc = copy(c);
+        G = new HashMap<Long,Integer>();
+        return resCare(rf,rc);
+    }
+    
+    // Recursive generalized cofactor of f by c, both nodes of T
+    private int con(int f,int c){
+        if(c == 0) return 0;
+        if(c == 1 || f == 0 || f == 1) return f;
+        if(f == c) return 1;
+        Long key = key(f,c);
+        Integer cached = G.get(key);
+        if(cached != null) return cached;
+        int v = Math.min(T[f][0],T[c][0]);
+        int fl = cofactor(f,v,0);
+        int fh = cofactor(f,v,1);
+        int cl = cofactor(c,v,0);
+        int ch = cofactor(c,v,1);
+        int u;
+        if(cl == 0) u = con(fh,ch);
+        else if(ch == 0) u = con(fl,cl);
+        else u = mk(v,con(fl,cl),con(fh,ch));
+        G.put(key,u);
+        return u;
+    }
+    
+    // Recursive restrict of f by the care set c, both nodes of T
+    private int resCare(int f,int c){
+        if(c == 0) return 0;
+        if(c == 1 || f == 0 || f == 1) return f;
+        if(f == c) return 1;
+        Long key = key(f,c);
+        Integer cached = G.get(key);
+        if(cached != null) return cached;
+        int u;
+        if(T[c][0] < T[f][0]){
+            // f does not depend on var(c) : quantify it out of c
+            u = resCare(f,or(T[c][1],T[c][2]));
+        }else{
+            int v = T[f][0];
+            int cl = cofactor(c,v,0);
+            int ch = cofactor(c,v,1);
+            if(cl == 0) u = resCare(T[f][2],ch);
+            else if(ch == 0) u = resCare(T[f][1],cl);
+            else u = mk(v,resCare(T[f][1],cl),resCare(T[f][2],ch));
+        }
+        G.put(key,u);
+        return u;
+    }
+    
+    // Returns a OR b, both nodes of T
+    private int or(int a,int b){
+        if(a == 1 || b == 1) return 1;
+        if(a == 0 || a == b) return b;
+        if(b == 0) return a;
+        if(a > b) return or(b,a);
+        // Negative keys keep OR results apart from con/resCare results
+        Long key = -1 - key(a,b);
+        Integer cached = G.get(key);
+        if(cached != null) return cached;
+        int v = Math.min(T[a][0],T[b][0]);
+        int u = mk(v,or(cofactor(a,v,0),cofactor(b,v,0)),
+                     or(cofactor(a,v,1),cofactor(b,v,1)));
+        G.put(key,u);
+        return u;
+    }
+    
+    // Returns node with variable v set to val, v being at most var(node)
+    private int cofactor(int node,int v,int val){
+        if(T[node][0] != v) return node;
+        return (val == 0) ? T[node][1] : T[node][2];
+    }
+    
+    private long key(int a,int b){
+        return ((long) a << 31) | b;
+    }
+    
+    // copy(u) : Copies the ROBDD rooted at the last node of u into T
+    private int copy(ROBDD u){
+        int[][] source = u.getROBDDTable();
+        int count = u.getNodeCount();
+        int[] copied = new int[count];
+        copied[0] = 0;
+        copied[1] = 1;
+        // Children have smaller indices than their parents
+        for(int j=2;j<count;j++){
+            copied[j] = mk(source[j][0],copied[source[j][1]],
+                           copied[source[j][2]]);
+        }
+        return copied[count - 1];
     }
      
     /* Supporting Operations on T*/
     // add(i,l,h) : Adds and returns a new node with var(u) = i, var(l) = l ...
-    // Takes O(1) time
+    // Takes O(1) time. Throws ROBDDNodeLimitException if T is at its limit
     private int add(int i,int l,int h){
+        if(nodeCount == nodeLimit) throw new ROBDDNodeLimitException(nodeLimit);
         int curNodeIndex = nodeCount++;
         if(curNodeIndex == capacity) expandArray();
-        T[curNodeIndex][0] = i;
-        T[curNodeIndex][1] = l;
-        T[curNodeIndex][2] = h;
+        T[curNodeIndex] = new int[]{i,l,h};
         return curNodeIndex;
     }
     
-    /* Supporint Opeartions on H */
-    // member(i,l,h) : Returns if node with attributes is already in ROBDD.
-    // Takes O(1) time
-    private boolean member(int i, int l, int h){
-        int hashCode = generateHash(i,l,h);
-        // Not present in extended capacity
-        if(hashCode>(H.length-1)) return false;
-        // Not present in current capacity
-        return H[hashCode] != -1 ;
-    }
- 
-    // lookup(i,l,h) : Returns the node with attributes in ROBDD 
-    // Takes O(1) time
+    /* Supporting Operations on H */
+    // lookup(i,l,h) : Returns the node with attributes in ROBDD, -1 if absent.
+    // Takes O(1) expected time
     private int lookup(int i,int l,int h){
-        int hashCode = generateHash(i,l,h);
-        return H[hashCode];    
-    }     
+        int mask = H.length - 1;
+        for(int slot=generateHash(i,l,h) & mask;H[slot]!=-1;slot=(slot+1) & mask){
+            int node = H[slot];
+            if(T[node][0] == i && T[node][1] == l && T[node][2] == h)
+                return node;
+        }
+        return -1;
+    }
  
-    // insert(i,l,h) : Inserts node with attributes i,l,h,node in Hash Table
+    // insert(i,l,h) : Inserts node with attributes i,l,h,node into Hash Table
     private void insert(int i,int l,int h,int node){
-        int hashCode = generateHash(i,l,h);
-        if(hashCode>(H.length+1)) renewHashTable(hashCode);
-        if(H[hashCode] != -1) renewHashTable(hashCode);
-        H[hashCode] = node;
-        return;    
+        // Keep the load factor of H below 1/2. Renewing also inserts node
+        if(2L*(nodeCount - 2) > H.length){
+            renewHashTable(2*H.length);
+            return;
+        }
+        int mask = H.length - 1;
+        int slot = generateHash(i,l,h) & mask;
+        while(H[slot] != -1) slot = (slot+1) & mask;
+        H[slot] = node;
     }
     
+    // expandArray : Grows T by growthFactor, without going over nodeLimit.
+    // Only the row references are copied.
     private void expandArray(){
-        capacity *= 2;
-        int[][] temp = new int[capacity][3];
-        for(int i=0;i<T.length;i++){
-            temp[i][0] = T[i][0];
-            temp[i][1] = T[i][1];
-            temp[i][2] = T[i][2];
-        }
-        T = temp;
+        long grown = (long) (capacity*growthFactor);
+        capacity = (int) Math.max(capacity + 1,Math.min(grown,nodeLimit));
+        T = Arrays.copyOf(T,capacity);
     }
    
     // Private method to generate a HashCode
     private int generateHash(int i,int l,int h){
-        int hashCode = (pair(i,pair(l,h)));
-        return hashCode;    
-    }   
-   
-    // pair(i,j) useful function for generation of hash code
-    private int pair(int i,int j){
-        return (((i+j)*(i+j+1))/2 + i);
-    } 
+        int hashCode = i*0x9E3779B1 + l*0x85EBCA77 + h*0xC2B2AE3D;
+        return hashCode ^ (hashCode >>> 15);
+    }
     
-    // renewing hash table in case of fulfilled capacity
-    private void renewHashTable(int hashCode){
-        int newSize = hashCode + 1;
-        int[] newH= new int[newSize];
-        for(int j=0;j<newSize;j++){
-            newH[j] = -1;
-        }
+    // renewing hash table with the given size, rehashing every node
+    private void renewHashTable(int newSize){
+        int[] newH = new int[newSize];
+        Arrays.fill(newH,-1);
+        int mask = newSize - 1;
         for(int j=2;j<nodeCount;j++){
-            int i = T[j][0];
-            int l = T[j][1];
-            int h = T[j][2];
-            int hashCodeCur = generateHash(i,l,h);
-            newH[hashCodeCur] = j; 
+            int slot = generateHash(T[j][0],T[j][1],T[j][2]) & mask;
+            while(newH[slot] != -1) slot = (slot+1) & mask;
+            newH[slot] = j;
         }
         H = newH;
-        return;
     }
  
     // Evaluates boolean expressions passed in as strings
@@ -239,6 +341,16 @@ public class ROBDDRestricted{
         
         test.print();   
         rest.print();
+        
+        // f = (x1 && x2) || (x3 && x4), care set x1 == x3
+        ROBDD f = new ROBDD(4);
+        f.build("x1&&x2 || x3&&x4",1);
+        ROBDD care = new ROBDD(4);
+        care.build("NOT(x1&&NOT(x3) || NOT(x1)&&x3)",1);
+        ROBDDRestricted minimized = new ROBDDRestricted(4);
+        System.out.println("constrain root : " + minimized.constrain(f,care));
+        System.out.println("restrict root : " + minimized.restrict(f,care));
+        minimized.print();
                      
     }   
 }
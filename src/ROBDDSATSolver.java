@@ -8,33 +8,50 @@ public class ROBDDSATSolver{
     private int[] H;
     private int nodeCount;   
     private int capacity;
+    private double growthFactor;
+    private int nodeLimit;
     private int vars;
     // DP Table for efficient SAT Counts.
     private int[] SATCountTable;
     // Truth Assignment for ANSAT
     private int[] SATAssignment;
     private boolean SATISFIABLE;
+    // DP Tables for min cost satisfying assignments
+    private double[] MinCostTable;
+    private int[] MinCostChoice;
+    private double[] SkippedCost;
+    // DP Tables for shortest cubes, kept across calls on the same ROBDD.
+    // CubeLength[node] is the fewest literals of a path from node to 1.
+    private ROBDD CubeSource;
+    private int[] CubeLength;
+    private int[] CubeChoice;
+    private int CubeComputed;
+    private long CubeModificationCount;
     // Constructor. Equivalent to the init(T),init(H) method in Notes 
     // Here n is the number of variables.
     public ROBDDSATSolver(int n){
+        this(n,ROBDDConfig.DEFAULT);
+    }
+    
+    // Constructor. Sizes and grows the tables as given by config
+    public ROBDDSATSolver(int n,ROBDDConfig config){
         // Initializing T to contain 0 and 1
         nodeCount = 0;
-        capacity = n;
+        capacity = Math.max(2,Math.min(config.getInitialNodeCapacity(),
+                                       config.getNodeLimit()));
         vars = n;
-        T = new int[capacity][3];
+        growthFactor = config.getGrowthFactor();
+        nodeLimit = Math.min(config.getNodeLimit(),ROBDDNodeStore.MAX_NODES);
+        T = new int[capacity][];
         
         // Adding 0 and 1 node. -1 indicates NULL.
-        T[0][0] = n+1;
-        T[0][1] = -1;
-        T[0][2] = -1;
-        T[1][0] = n+1;
-        T[1][1] = -1;
-        T[1][2] = -1;
+        T[0] = new int[]{n+1,-1,-1};
+        T[1] = new int[]{n+1,-1,-1};
         nodeCount += 2;
         
-        // Initializing H 
-        H = new int[capacity];
-        for(int i=0;i<capacity;i++)
+        // Initializing H. Open addressing, the size is a power of 2
+        H = new int[config.getUniqueTableSize()];
+        for(int i=0;i<H.length;i++)
             H[i] = -1; 
     }
       
@@ -44,14 +61,13 @@ public class ROBDDSATSolver{
         // Return in case the node is redundant
         if(l == h){
             return l;            
-        }else if(member(i,l,h)){
-            return lookup(i,l,h);
-        }else{ 
-            int node = add(i,l,h);
+        }
+        int node = lookup(i,l,h);
+        if(node == -1){ 
+            node = add(i,l,h);
             insert(i,l,h,node);
-            return node;
         }
-            
+        return node;
     } 
     
     // print : Prints the table T and H. Useful for debugging
@@ -75,10 +91,177 @@ public class ROBDDSATSolver{
         nodeCount = u.getNodeCount();
         SATCountTable = new int[nodeCount];
         for(int i=0;i<nodeCount;i++) SATCountTable[i] = -1;
-        int solutions = count(nodeCount - 1);
+        int root = nodeCount - 1;
+        // Variables above the root can take any value
+        int solutions = (int) Math.pow(2,T[root][0]-1)*count(root);
         return solutions;
     }    
     
+    // probability(ROBDD,p) : Returns the probability that the given ROBDD is
+    // true when every variable i is independently 1 with probability p[i-1]
+    public double probability(ROBDD u,double[] p){
+        return nodeProbabilities(u,p)[u.getNodeCount() - 1];
+    }
+    
+    // probability(ROBDD,root,p) : Same as probability(ROBDD,p) for root. Only
+    // the nodes below root are visited.
+    public double probability(ROBDD u,int root,double[] p){
+        return probability(u,root,new double[][]{p})[0];
+    }
+    
+    // probability(ROBDD,ps) : Batch version of probability(ROBDD,p). The
+    // nodes below the root are collected once and reused for every vector.
+    public double[] probability(ROBDD u,double[][] ps){
+        return probability(u,u.getNodeCount() - 1,ps);
+    }
+    
+    // probability(ROBDD,root,ps) : Same as probability(ROBDD,ps) for root
+    public double[] probability(ROBDD u,int root,double[][] ps){
+        T = u.getROBDDTable();
+        nodeCount = u.getNodeCount();
+        int[] order = topologicalOrder(root);
+        double[] P = new double[Math.max(root + 1,2)];
+        double[] result = new double[ps.length];
+        for(int k=0;k<ps.length;k++){
+            result[k] = propagate(order,root,ps[k],P);
+        }
+        return result;
+    }
+    
+    // nodeProbabilities(ROBDD,p) : Returns for every node the probability
+    // that the function of that node is true. As T is built bottom up, the
+    // children of a node always have a smaller index, so one pass suffices.
+    public double[] nodeProbabilities(ROBDD u,double[] p){
+        T = u.getROBDDTable();
+        nodeCount = u.getNodeCount();
+        double[] P = new double[nodeCount];
+        P[0] = 0;
+        P[1] = 1;
+        for(int i=2;i<nodeCount;i++){
+            double pv = p[T[i][0]-1];
+            P[i] = (1 - pv)*P[T[i][1]] + pv*P[T[i][2]];
+        }
+        return P;
+    }
+    
+    // weightedCount(ROBDD,wLow,wHigh) : Returns the weighted model count of
+    // the given ROBDD. A truth assignment weighs the product of wLow[i-1] for
+    // every variable i set to 0 and of wHigh[i-1] for every variable set to 1
+    public double weightedCount(ROBDD u,double[] wLow,double[] wHigh){
+        return weightedCount(u,u.getNodeCount() - 1,wLow,wHigh);
+    }
+    
+    // weightedCount(ROBDD,root,wLow,wHigh) : Same as weightedCount(ROBDD,
+    // wLow,wHigh) for root
+    public double weightedCount(ROBDD u,int root,double[] wLow,double[] wHigh){
+        return weightedCount(u,root,new double[][]{wLow},new double[][]{wHigh})[0];
+    }
+    
+    // weightedCount(ROBDD,wLows,wHighs) : Batch version of weightedCount,
+    // entry k being the count under wLows[k] and wHighs[k]. The nodes below
+    // the root are collected once and reused for every pair of vectors.
+    public double[] weightedCount(ROBDD u,double[][] wLows,double[][] wHighs){
+        return weightedCount(u,u.getNodeCount() - 1,wLows,wHighs);
+    }
+    
+    // weightedCount(ROBDD,root,wLows,wHighs) : Same as weightedCount(ROBDD,
+    // wLows,wHighs) for root
+    public double[] weightedCount(ROBDD u,int root,double[][] wLows,
+                                  double[][] wHighs){
+        if(wLows.length != wHighs.length)
+            throw new IllegalArgumentException("wLows and wHighs differ in length");
+        T = u.getROBDDTable();
+        nodeCount = u.getNodeCount();
+        int[] order = topologicalOrder(root);
+        double[] W = new double[Math.max(root + 1,2)];
+        double[] result = new double[wLows.length];
+        for(int k=0;k<wLows.length;k++){
+            result[k] = weigh(order,root,wLows[k],wHighs[k],W);
+        }
+        return result;
+    }
+    
+    // Weighs the nodes in order in a single pass, returns the root's weight.
+    // Variable i is scaled by its level weight wLow[i-1] + wHigh[i-1], so a
+    // variable skipped by an edge weighs 1 and the edge needs no factor. The
+    // product of the level weights multiplies the root at the end. Variables
+    // of level weight 0 are not scaled; an edge skipping one of them weighs
+    // 0, which the prefix counts of such variables tell in O(1).
+    private double weigh(int[] order,int root,double[] wLow,double[] wHigh,
+                         double[] W){
+        int n = T[0][0] - 1;
+        checkLength(wLow,n,"wLow");
+        checkLength(wHigh,n,"wHigh");
+        double[] low = new double[n + 1];
+        double[] high = new double[n + 1];
+        // zeros[i] : Number of variables 1..i-1 of level weight 0
+        int[] zeros = new int[n + 2];
+        double scale = 1;
+        for(int i=1;i<=n;i++){
+            double levelWeight = wLow[i-1] + wHigh[i-1];
+            double s = (levelWeight == 0) ? 1 : levelWeight;
+            low[i] = wLow[i-1]/s;
+            high[i] = wHigh[i-1]/s;
+            scale *= s;
+            zeros[i+1] = zeros[i] + ((levelWeight == 0) ? 1 : 0);
+        }
+        W[0] = 0;
+        W[1] = 1;
+        for(int k=0;k<order.length;k++){
+            int node = order[k];
+            int v = T[node][0];
+            int l = T[node][1];
+            int h = T[node][2];
+            W[node] = low[v]*skipped(zeros,v+1,T[l][0])*W[l]
+                    + high[v]*skipped(zeros,v+1,T[h][0])*W[h];
+        }
+        return scale*skipped(zeros,1,T[root][0])*W[root];
+    }
+    
+    // Weight of the scaled variables from..to-1 skipped by an edge : 1, or 0
+    // if one of them has level weight 0
+    private double skipped(int[] zeros,int from,int to){
+        return (zeros[to] == zeros[from]) ? 1 : 0;
+    }
+    
+    // Throws if values has no entry for some of the n variables
+    private void checkLength(double[] values,int n,String name){
+        if(values.length < n)
+            throw new IllegalArgumentException(name + " has " + values.length
+                + " entries, the ROBDD has " + n + " variables");
+    }
+    
+    // Returns the non terminal nodes reachable from root, children first
+    private int[] topologicalOrder(int root){
+        boolean[] reachable = new boolean[root + 1];
+        reachable[root] = true;
+        int count = 0;
+        for(int i=root;i>1;i--){
+            if(!reachable[i]) continue;
+            count++;
+            reachable[T[i][1]] = true;
+            reachable[T[i][2]] = true;
+        }
+        int[] order = new int[count];
+        count = 0;
+        for(int i=2;i<=root;i++){
+            if(reachable[i]) order[count++] = i;
+        }
+        return order;
+    }
+    
+    // Propagates probabilities p over the nodes in order, returns the root's
+    private double propagate(int[] order,int root,double[] p,double[] P){
+        P[0] = 0;
+        P[1] = 1;
+        for(int k=0;k<order.length;k++){
+            int node = order[k];
+            double pv = p[T[node][0]-1];
+            P[node] = (1 - pv)*P[T[node][1]] + pv*P[T[node][2]];
+        }
+        return P[root];
+    }
+    
     // ANYSAT(ROBDD u) : Returns a satisfying assignment for given ROBDD
     public int[] ANYSAT(ROBDD u){
         SATISFIABLE = true;
@@ -121,6 +304,268 @@ public class ROBDDSATSolver{
         return;    
     }
     
+    // minCostSAT(ROBDD,costLow,costHigh) : Returns the cheapest satisfying
+    // assignment, where setting variable i to 0 costs costLow[i-1] and to 1
+    // costs costHigh[i-1]. Returns null if the ROBDD is unsatisfiable.
+    public int[] minCostSAT(ROBDD u,double[] costLow,double[] costHigh){
+        return minCostSAT(u,u.getNodeCount() - 1,costLow,costHigh);
+    }
+    
+    // minCostSAT(ROBDD,root,costLow,costHigh) : Same as
+    // minCostSAT(ROBDD,costLow,costHigh) for root
+    public int[] minCostSAT(ROBDD u,int root,double[] costLow,double[] costHigh){
+        minCostTable(u,root,costLow,costHigh);
+        if(MinCostTable[root] == Double.POSITIVE_INFINITY) return null;
+        int n = T[0][0] - 1;
+        int[] assignment = new int[n];
+        int level = 1;
+        int node = root;
+        while(level <= n){
+            if(level < T[node][0]){
+                // Variable not tested on this path, take the cheaper value
+                assignment[level-1] = cheaper(costLow,costHigh,level);
+            }else if(MinCostChoice[node] == 0){
+                assignment[level-1] = 0;
+                node = T[node][1];
+            }else{
+                assignment[level-1] = 1;
+                node = T[node][2];
+            }
+            level++;
+        }
+        return assignment;
+    }
+    
+    // minCost(ROBDD,costLow,costHigh) : Returns the cost of minCostSAT, or
+    // infinity if the ROBDD is unsatisfiable
+    public double minCost(ROBDD u,double[] costLow,double[] costHigh){
+        return minCost(u,u.getNodeCount() - 1,costLow,costHigh);
+    }
+    
+    // minCost(ROBDD,root,costLow,costHigh) : Same as
+    // minCost(ROBDD,costLow,costHigh) for root
+    public double minCost(ROBDD u,int root,double[] costLow,double[] costHigh){
+        minCostTable(u,root,costLow,costHigh);
+        return skippedCost(1,T[root][0]) + MinCostTable[root];
+    }
+    
+    // kBestSAT(ROBDD,costLow,costHigh,k) : Returns the k cheapest satisfying
+    // assignments (fewer if there are not that many), cheapest first
+    public List<int[]> kBestSAT(ROBDD u,double[] costLow,double[] costHigh,
+                                int k){
+        return kBestSAT(u,u.getNodeCount() - 1,costLow,costHigh,k);
+    }
+    
+    // kBestSAT(ROBDD,root,costLow,costHigh,k) : Same as
+    // kBestSAT(ROBDD,costLow,costHigh,k) for root
+    public List<int[]> kBestSAT(ROBDD u,int root,double[] costLow,
+                                double[] costHigh,int k){
+        List<int[]> best = new ArrayList<int[]>();
+        Iterator<int[]> it = cheapestSATs(u,root,costLow,costHigh);
+        while(best.size() < k && it.hasNext()) best.add(it.next());
+        return best;
+    }
+    
+    // cheapestSATs(ROBDD,costLow,costHigh) : Returns an iterator producing
+    // the satisfying assignments lazily in order of increasing cost. This is
+    // a best first search over the ROBDD where the remaining cost of a node
+    // is known exactly from the min cost table.
+    public Iterator<int[]> cheapestSATs(ROBDD u,double[] costLow,
+                                        double[] costHigh){
+        return cheapestSATs(u,u.getNodeCount() - 1,costLow,costHigh);
+    }
+    
+    // cheapestSATs(ROBDD,root,costLow,costHigh) : Same as
+    // cheapestSATs(ROBDD,costLow,costHigh) for root
+    public Iterator<int[]> cheapestSATs(ROBDD u,int root,final double[] costLow,
+                                        final double[] costHigh){
+        minCostTable(u,root,costLow,costHigh);
+        final int[][] T = this.T;
+        final int vars = T[0][0] - 1;
+        final double[] C = MinCostTable;
+        final double[] skipped = SkippedCost;
+        final PriorityQueue<SATPath> queue = new PriorityQueue<SATPath>();
+        if(C[root] != Double.POSITIVE_INFINITY)
+            queue.add(new SATPath(root,1,-1,null,0,
+                                  skipped[T[root][0]] - skipped[1] + C[root]));
+        return new Iterator<int[]>(){
+            public boolean hasNext(){
+                return !queue.isEmpty();
+            }
+            
+            public int[] next(){
+                while(!queue.isEmpty()){
+                    SATPath path = queue.poll();
+                    if(path.level > vars) return path.assignment(vars);
+                    int node = path.node;
+                    int level = path.level;
+                    int l = node;
+                    int h = node;
+                    if(level == T[node][0]){
+                        l = T[node][1];
+                        h = T[node][2];
+                    }
+                    expand(path,l,0,path.cost + costLow[level-1]);
+                    expand(path,h,1,path.cost + costHigh[level-1]);
+                }
+                throw new NoSuchElementException();
+            }
+            
+            private void expand(SATPath path,int node,int value,double cost){
+                if(C[node] == Double.POSITIVE_INFINITY) return;
+                int level = path.level + 1;
+                double remaining = skipped[T[node][0]] - skipped[level] 
+                                 + C[node];
+                queue.add(new SATPath(node,level,value,path,cost,
+                                      cost + remaining));
+            }
+        };
+    }
+    
+    // Partial assignment on the search frontier of cheapestSATs. The values
+    // of variables 1..level-1 are stored as a chain of parent links.
+    private static class SATPath implements Comparable<SATPath>{
+        final int node;
+        final int level;
+        final int value;
+        final SATPath parent;
+        final double cost;
+        final double estimate;
+        
+        SATPath(int node,int level,int value,SATPath parent,double cost,
+                double estimate){
+            this.node = node;
+            this.level = level;
+            this.value = value;
+            this.parent = parent;
+            this.cost = cost;
+            this.estimate = estimate;
+        }
+        
+        int[] assignment(int vars){
+            int[] assignment = new int[vars];
+            int i = level - 1;
+            for(SATPath p=this;p.parent!=null;p=p.parent)
+                assignment[--i] = p.value;
+            return assignment;
+        }
+        
+        public int compareTo(SATPath other){
+            return Double.compare(estimate,other.estimate);
+        }
+    }
+    
+    // Fills MinCostTable with the cheapest cost of satisfying each node up to
+    // root over the variables var(node)..n, and MinCostChoice with the edge
+    // taken. n is the variable count of the ROBDD, which may differ from the
+    // solver's.
+    private void minCostTable(ROBDD u,int root,double[] costLow,
+                              double[] costHigh){
+        T = u.getROBDDTable();
+        nodeCount = u.getNodeCount();
+        int n = T[0][0] - 1;
+        checkLength(costLow,n,"costLow");
+        checkLength(costHigh,n,"costHigh");
+        // SkippedCost[i] : Cheapest cost of the variables 1..i-1
+        SkippedCost = new double[n + 2];
+        for(int i=1;i<=n;i++)
+            SkippedCost[i+1] = SkippedCost[i] 
+                             + Math.min(costLow[i-1],costHigh[i-1]);
+        MinCostTable = new double[nodeCount];
+        MinCostChoice = new int[nodeCount];
+        MinCostTable[0] = Double.POSITIVE_INFINITY;
+        MinCostTable[1] = 0;
+        for(int i=2;i<=root;i++){
+            int v = T[i][0];
+            int l = T[i][1];
+            int h = T[i][2];
+            double low = costLow[v-1] + skippedCost(v+1,T[l][0]) 
+                       + MinCostTable[l];
+            double high = costHigh[v-1] + skippedCost(v+1,T[h][0]) 
+                        + MinCostTable[h];
+            MinCostChoice[i] = (high < low) ? 1 : 0;
+            MinCostTable[i] = Math.min(low,high);
+        }
+    }
+    
+    // Cheapest cost of the variables from..to-1 skipped by an edge
+    private double skippedCost(int from,int to){
+        return SkippedCost[to] - SkippedCost[from];
+    }
+    
+    // shortestCube(ROBDD) : Returns the satisfying cube with the fewest
+    // literals of the ROBDD, root being the last node. Entry i-1 is the
+    // value of variable i, or -1 if the cube leaves it free. Returns null
+    // if the ROBDD is unsatisfiable.
+    public int[] shortestCube(ROBDD u){
+        return shortestCube(u,u.getNodeCount() - 1);
+    }
+    
+    // shortestCube(ROBDD,root) : Same as shortestCube(ROBDD) for root
+    public int[] shortestCube(ROBDD u,int root){
+        cubeTable(u);
+        if(CubeLength[root] == Integer.MAX_VALUE) return null;
+        int[] cube = new int[T[0][0] - 1];
+        Arrays.fill(cube,-1);
+        int node = root;
+        while(node > 1){
+            cube[T[node][0]-1] = CubeChoice[node];
+            node = T[node][1 + CubeChoice[node]];
+        }
+        return cube;
+    }
+    
+    // shortestCubeLength(ROBDD,root) : Returns the number of literals of
+    // shortestCube, -1 if the ROBDD is unsatisfiable
+    public int shortestCubeLength(ROBDD u,int root){
+        cubeTable(u);
+        return (CubeLength[root] == Integer.MAX_VALUE) ? -1 : CubeLength[root];
+    }
+    
+    // largestCube(ROBDD,root) : Returns the number of assignments of the
+    // largest cube contained in the ROBDD, 2^(n - shortestCubeLength),
+    // n being the variable count of the ROBDD
+    public double largestCube(ROBDD u,int root){
+        int length = shortestCubeLength(u,root);
+        return (length == -1) ? 0 : Math.pow(2,T[0][0] - 1 - length);
+    }
+    
+    // Fills CubeLength and CubeChoice in index order, children first. Nodes
+    // computed by an earlier call on the same ROBDD are kept, unless its
+    // store has removed or changed nodes since, as told by the modification
+    // count (see ROBDD.build with a token).
+    private void cubeTable(ROBDD u){
+        T = u.getROBDDTable();
+        nodeCount = u.getNodeCount();
+        long modificationCount = u.getNodeStore().getModificationCount();
+        if(CubeSource != u || CubeModificationCount != modificationCount){
+            CubeSource = u;
+            CubeModificationCount = modificationCount;
+            CubeComputed = 2;
+            CubeLength = new int[Math.max(nodeCount,2)];
+            CubeChoice = new int[Math.max(nodeCount,2)];
+            CubeLength[0] = Integer.MAX_VALUE;
+            CubeLength[1] = 0;
+        }
+        if(CubeLength.length < nodeCount){
+            CubeLength = Arrays.copyOf(CubeLength,nodeCount);
+            CubeChoice = Arrays.copyOf(CubeChoice,nodeCount);
+        }
+        for(int i=CubeComputed;i<nodeCount;i++){
+            int low = CubeLength[T[i][1]];
+            int high = CubeLength[T[i][2]];
+            CubeChoice[i] = (high < low) ? 1 : 0;
+            int best = Math.min(low,high);
+            CubeLength[i] = (best == Integer.MAX_VALUE) ? best : best + 1;
+        }
+        CubeComputed = nodeCount;
+    }
+    
+    // Cheaper value of variable i
+    private int cheaper(double[] costLow,double[] costHigh,int i){
+        return (costHigh[i-1] < costLow[i-1]) ? 1 : 0;
+    }
+    
     // Recursive function that does the job of SATCount. Uses DP
     private int count(int node){
         if(SATVisited(node)) return SATCountTable[node];
@@ -130,7 +575,8 @@ public class ROBDDSATSolver{
             int totalAssignLow = arbitAssignLow*count(T[node][1]);
             int arbitAssignHigh = (int) Math.pow(2,T[T[node][2]][0]-T[node][0]-1);
             int totalAssignHigh = arbitAssignHigh*count(T[node][2]);
-            return totalAssignHigh + totalAssignLow;
+            SATCountTable[node] = totalAssignHigh + totalAssignLow;
+            return SATCountTable[node];
         }
     }
     
@@ -142,81 +588,66 @@ public class ROBDDSATSolver{
     // Private Implementation 
     /* Supporting Operations on T*/
     // add(i,l,h) : Adds and returns a new node with var(u) = i, var(l) = l ...
-    // Takes O(1) time
+    // Takes O(1) time. Throws ROBDDNodeLimitException if T is at its limit
     private int add(int i,int l,int h){
+        if(nodeCount == nodeLimit) throw new ROBDDNodeLimitException(nodeLimit);
         int curNodeIndex = nodeCount++;
         if(curNodeIndex == capacity) expandArray();
-        T[curNodeIndex][0] = i;
-        T[curNodeIndex][1] = l;
-        T[curNodeIndex][2] = h;
+        T[curNodeIndex] = new int[]{i,l,h};
         return curNodeIndex;
     }
     
-    /* Supporint Opeartions on H */
-    // member(i,l,h) : Returns whether node with attributes is already in ROBDD.
-    // Takes O(1) time
-    private boolean member(int i, int l, int h){
-        int hashCode = generateHash(i,l,h);
-        // Not present in extended capacity
-        if(hashCode>(H.length-1)) return false;
-        // Not present in current capacity
-        return H[hashCode] != -1 ;
-    }
- 
-    // lookup(i,l,h) : Returns the node with attributes in ROBDD 
-    // Takes O(1) time
+    /* Supporting Operations on H */
+    // lookup(i,l,h) : Returns the node with attributes in ROBDD, -1 if absent.
+    // Takes O(1) expected time
     private int lookup(int i,int l,int h){
-        int hashCode = generateHash(i,l,h);
-        return H[hashCode];    
-    }     
+        int mask = H.length - 1;
+        for(int slot=generateHash(i,l,h) & mask;H[slot]!=-1;slot=(slot+1) & mask){
+            int node = H[slot];
+            if(T[node][0] == i && T[node][1] == l && T[node][2] == h)
+                return node;
+        }
+        return -1;
+    }
  
     // insert(i,l,h) : Inserts node with attributes i,l,h,node into Hash Table
     private void insert(int i,int l,int h,int node){
-        int hashCode = generateHash(i,l,h);
-        if(hashCode>(H.length+1)) renewHashTable(hashCode);
-        if(H[hashCode] != -1) renewHashTable(hashCode);
-        H[hashCode] = node;
-        return;    
+        // Keep the load factor of H below 1/2. Renewing also inserts node
+        if(2L*(nodeCount - 2) > H.length){
+            renewHashTable(2*H.length);
+            return;
+        }
+        int mask = H.length - 1;
+        int slot = generateHash(i,l,h) & mask;
+        while(H[slot] != -1) slot = (slot+1) & mask;
+        H[slot] = node;
     }
     
+    // expandArray : Grows T by growthFactor, without going over nodeLimit.
+    // Only the row references are copied.
     private void expandArray(){
-        capacity *= 2;
-        int[][] temp = new int[capacity][3];
-        for(int i=0;i<T.length;i++){
-            temp[i][0] = T[i][0];
-            temp[i][1] = T[i][1];
-            temp[i][2] = T[i][2];
-        }
-        T = temp;
+        long grown = (long) (capacity*growthFactor);
+        capacity = (int) Math.max(capacity + 1,Math.min(grown,nodeLimit));
+        T = Arrays.copyOf(T,capacity);
     }
    
     // Private method to generate a HashCode
     private int generateHash(int i,int l,int h){
-        int hashCode = (pair(i,pair(l,h)));
-        return hashCode;    
-    }   
-   
-    // pair(i,j) useful function for generation of hash code
-    private int pair(int i,int j){
-        return (((i+j)*(i+j+1))/2 + i);
-    } 
+        int hashCode = i*0x9E3779B1 + l*0x85EBCA77 + h*0xC2B2AE3D;
+        return hashCode ^ (hashCode >>> 15);
+    }
     
-    // renewing hash table in case of fulfilled capacity
-    private void renewHashTable(int hashCode){
-        int newSize = hashCode + 1;
-        int[] newH= new int[newSize];
-        for(int j=0;j<newSize;j++){
-            newH[j] = -1;
-        }
+    // renewing hash table with the given size, rehashing every node
+    private void renewHashTable(int newSize){
+        int[] newH = new int[newSize];
+        Arrays.fill(newH,-1);
+        int mask = newSize - 1;
         for(int j=2;j<nodeCount;j++){
-            int i = T[j][0];
-            int l = T[j][1];
-            int h = T[j][2];
-            int hashCodeCur = generateHash(i,l,h);
-            newH[hashCodeCur] = j; 
+            int slot = generateHash(T[j][0],T[j][1],T[j][2]) & mask;
+            while(newH[slot] != -1) slot = (slot+1) & mask;
+            newH[slot] = j;
         }
         H = newH;
-        return;
     }
  
     // Evaluates boolean expressions passed in as strings
@@ -254,6 +685,65 @@ public class ROBDDSATSolver{
         for(int i=0;i<SATassgn.length;i++)
             sat += " " + String.valueOf(SATassgn[i]);
         System.out.println("One SAT :"+ sat);    
+        double[] half = {0.5,0.5,0.5,0.5};
+        double[] ones = {1,1,1,1};
+        System.out.println("Probability (p = 0.5) : " 
+                           + testSat.probability(test,half));
+        System.out.println("Weighted count (unit weights) : " 
+                           + testSat.weightedCount(test,ones,ones));
+        double[][] ps = {half,{0.9,0.9,0.1,0.1},{1,1,1,1}};
+        System.out.println("Batch probabilities : " 
+                           + Arrays.toString(testSat.probability(test,ps)));
+        double[][] wLows = {ones,{1,1,0,0}};
+        double[][] wHighs = {ones,{2,2,1,1}};
+        System.out.println("Batch weighted counts : " 
+                           + Arrays.toString(testSat.weightedCount(test,wLows,wHighs)));
+        // The high child of the root : x1 set to 1
+        int x1Set = test.getROBDDTable()[test.getNodeCount() - 1][2];
+        System.out.println("Probability with x1 = 1 (p = 0.5) : " 
+                           + testSat.probability(test,x1Set,half)
+                           + ", weighted count " 
+                           + testSat.weightedCount(test,x1Set,ones,ones));
+        double[] costLow = {1,2,3,4};
+        double[] costHigh = {4,3,2,1};
+        System.out.println("Min cost SAT : " 
+                           + Arrays.toString(testSat.minCostSAT(test,costLow,costHigh))
+                           + " cost " + testSat.minCost(test,costLow,costHigh));
+        for(int[] best : testSat.kBestSAT(test,costLow,costHigh,3))
+            System.out.println("k-best : " + Arrays.toString(best));
+        System.out.println("Min cost SAT of the cofactor x1 = 1 : "
+                           + Arrays.toString(testSat.minCostSAT(test,x1Set,costLow,costHigh))
+                           + " cost " + testSat.minCost(test,x1Set,costLow,costHigh));
+        for(int[] best : testSat.kBestSAT(test,x1Set,costLow,costHigh,2))
+            System.out.println("k-best of the cofactor x1 = 1 : " + Arrays.toString(best));
+        // An ROBDD with more variables than the solver was made for
+        ROBDD wider = new ROBDD(6);
+        wider.build("x1&&x6 || x5&&NOT(x2)",1);
+        double[] wideLow = {1,2,3,4,5,6};
+        double[] wideHigh = {6,5,4,3,2,1};
+        System.out.println("Min cost SAT over 6 variables : " 
+                           + Arrays.toString(testSat.minCostSAT(wider,wideLow,wideHigh))
+                           + " cost " + testSat.minCost(wider,wideLow,wideHigh));
+        try{
+            testSat.minCostSAT(wider,costLow,costHigh);
+        }catch(IllegalArgumentException e){
+            System.out.println("4 costs for 6 variables : " + e.getMessage());
+        }
+        int root = test.getNodeCount() - 1;
+        System.out.println("Shortest cube : " 
+                           + Arrays.toString(testSat.shortestCube(test))
+                           + ", length " + testSat.shortestCubeLength(test,root)
+                           + ", largest cube " + testSat.largestCube(test,root));
+        ROBDD cover = new ROBDD(4);
+        cover.build("x1&&x2&&x3 || NOT(x1)&&x4 || x2&&x4",1);
+        root = cover.getNodeCount() - 1;
+        System.out.println("Shortest cube of x1x2x3 + !x1x4 + x2x4 : "
+                           + Arrays.toString(testSat.shortestCube(cover))
+                           + ", largest cube " + testSat.largestCube(cover,root));
+        System.out.println("Shortest cube of x1x6 + x5!x2 : "
+                           + Arrays.toString(testSat.shortestCube(wider))
+                           + ", largest cube " 
+                           + testSat.largestCube(wider,wider.getNodeCount() - 1));
         test.print();   
                      
     }   
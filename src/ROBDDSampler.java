@@ -0,0 +1,189 @@
+/* =========================================================================== *
+ * File : ROBDDSampler.java                                                    *
+ * =========================================================================== *
+ * Class that draws random satisfying truth assignments of an ROBDD. The       *
+ * share of the high edge in the probability of every node is computed once,   *
+ * bottom up, after which a sample is a single walk from the root taking the   *
+ * high edge with that share. Node probabilities are kept as a mantissa and a  *
+ * binary exponent, so they do not underflow however many variables there are. *
+ * With the default probability of 0.5 per variable the samples are uniform    *
+ * over all satisfying assignments.                                            *
+ * Prime Methods : sample(random)                                              *
+ *               : sample(random,bits,count) / sampleParallel(bits,count)      *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+public class ROBDDSampler{
+
+    // Exponent of the probability 0
+    private static final int ZERO = Integer.MIN_VALUE/2;
+
+    private int[][] T;
+    private int root;
+    private int vars;
+    // Probability of variable i being 1 is p[i-1]
+    private double[] p;
+    // Probability of taking the high edge at each node
+    private double[] highProb;
+
+    // Constructor. Samples uniformly from the satisfying assignments of u
+    public ROBDDSampler(ROBDD u){
+        this(u,uniform(u));
+    }
+
+    // Constructor. Samples every satisfying assignment of u with probability
+    // proportional to its weight, when variable i is 1 with probability p[i-1]
+    public ROBDDSampler(ROBDD u,double[] p){
+        this(u,u.getNodeCount() - 1,p);
+    }
+
+    // Constructor. Samples the satisfying assignments of the ROBDD rooted at
+    // the given node, weighted by p
+    public ROBDDSampler(ROBDD u,int root,double[] p){
+        T = u.getROBDDTable();
+        this.root = root;
+        vars = T[0][0] - 1;
+        this.p = p.clone();
+        if(root == 0)
+            throw new IllegalArgumentException("ROBDD is unsatisfiable");
+        // The probability of node i is mantissa[i] * 2^exponent[i], with the
+        // mantissa in [1,2). Nodes of probability 0 have mantissa 0 and the
+        // exponent ZERO, below that of any other node
+        double[] mantissa = new double[root + 1];
+        int[] exponent = new int[root + 1];
+        exponent[0] = ZERO;
+        mantissa[1] = 1;
+        highProb = new double[root + 1];
+        for(int i=2;i<=root;i++){
+            int l = T[i][1];
+            int h = T[i][2];
+            int e = Math.max(exponent[l],exponent[h]);
+            double q = p[T[i][0]-1];
+            double high = q*Math.scalb(mantissa[h],exponent[h] - e);
+            double sum = (1 - q)*Math.scalb(mantissa[l],exponent[l] - e) + high;
+            if(sum == 0){
+                exponent[i] = ZERO;
+                continue;
+            }
+            highProb[i] = high/sum;
+            int k = Math.getExponent(sum);
+            mantissa[i] = Math.scalb(sum,-k);
+            exponent[i] = e + k;
+        }
+        if(mantissa[root] == 0)
+            throw new IllegalArgumentException("ROBDD has probability 0 under p");
+    }
+
+    // Public Interface
+    // wordsPerSample : Number of longs holding one sample in the bit matrix
+    public int wordsPerSample(){
+        return (vars + 63)/64;
+    }
+
+    // sample(random) : Returns a random satisfying assignment. assignment[i-1]
+    // holds the value of variable i, as in ROBDDSATSolver.ANYSAT
+    public int[] sample(RandomGenerator random){
+        long[] bits = new long[wordsPerSample()];
+        sampleInto(random,bits,0);
+        int[] assignment = new int[vars];
+        for(int i=0;i<vars;i++)
+            assignment[i] = (int) ((bits[i >>> 6] >>> (i & 63)) & 1);
+        return assignment;
+    }
+
+    // sample(random,bits,count) : Fills bits with count samples. Sample j
+    // occupies the longs starting at j*wordsPerSample(), and variable i is
+    // bit (i-1) of it.
+    public void sample(RandomGenerator random,long[] bits,int count){
+        int words = wordsPerSample();
+        for(int j=0;j<count;j++) sampleInto(random,bits,j*words);
+    }
+
+    // sampleParallel(bits,count) : Like sample(random,bits,count), but the
+    // samples are drawn in parallel, each thread with its ThreadLocalRandom
+    public void sampleParallel(long[] bits,int count){
+        final int words = wordsPerSample();
+        IntStream.range(0,count).parallel().forEach(j ->
+            sampleInto(ThreadLocalRandom.current(),bits,j*words));
+    }
+
+    // Private Implementation
+    // Walks from the root to 1 writing one sample at bits[offset..]
+    private void sampleInto(RandomGenerator random,long[] bits,int offset){
+        int words = wordsPerSample();
+        for(int w=0;w<words;w++) bits[offset + w] = 0;
+        int node = root;
+        for(int level=1;level<=vars;level++){
+            boolean value;
+            if(level < T[node][0]){
+                // Variable not tested on this path
+                value = random.nextDouble() < p[level-1];
+            }else{
+                value = random.nextDouble() < highProb[node];
+                node = value ? T[node][2] : T[node][1];
+            }
+            if(value) bits[offset + ((level-1) >>> 6)] |= 1L << ((level-1) & 63);
+        }
+    }
+
+    private static double[] uniform(ROBDD u){
+        double[] p = new double[u.getROBDDTable()[0][0] - 1];
+        Arrays.fill(p,0.5);
+        return p;
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDSampler implementation");
+        ROBDD test = new ROBDD(4);
+        String boolExp = "NOT(x1&&NOT(x2) || NOT(x1)&&x2)" +
+                         "&& NOT(x3&&NOT(x4) || NOT(x3)&&x4)";
+        test.build(boolExp,1);
+
+        ROBDDSampler sampler = new ROBDDSampler(test);
+        System.out.println("One sample : "
+                           + Arrays.toString(sampler.sample(new SplittableRandom(7))));
+
+        int count = 1000000;
+        long[] bits = new long[count*sampler.wordsPerSample()];
+        sampler.sampleParallel(bits,count);
+        Map<Long,Integer> histogram = new TreeMap<Long,Integer>();
+        for(int j=0;j<count;j++) histogram.merge(bits[j],1,Integer::sum);
+        System.out.println("Uniform histogram : " + histogram);
+
+        ROBDDSampler weighted = new ROBDDSampler(test,new double[]{0.9,0.9,0.5,0.5});
+        weighted.sample(new SplittableRandom(7),bits,count);
+        histogram.clear();
+        for(int j=0;j<count;j++) histogram.merge(bits[j],1,Integer::sum);
+        System.out.println("Weighted histogram : " + histogram);
+
+        // x1 & ... & xn, true with probability 2^-n, far below the smallest
+        // double, or exactly one of xn-1 and xn
+        int n = 3000;
+        ROBDD wide = new ROBDD(n);
+        int last = wide.mk(n-1,wide.mk(n,0,1),wide.mk(n,1,0));
+        int root = wide.mk(n-1,wide.mk(n,0,1),1);
+        for(int i=n-2;i>=1;i--) root = wide.mk(i,last,root);
+        int[] ones = new int[2];
+        int[] tail = new int[4];
+        ROBDDSampler wideSampler = new ROBDDSampler(wide,root,uniform(wide));
+        SplittableRandom random = new SplittableRandom(7);
+        for(int j=0;j<10000;j++){
+            int[] assignment = wideSampler.sample(random);
+            int sum = 0;
+            for(int i=0;i<n;i++) sum += assignment[i];
+            if(sum == n) ones[1]++;
+            else ones[0]++;
+            tail[2*assignment[n-2] + assignment[n-1]]++;
+        }
+        System.out.println(n + " variables : all ones " + ones[1] + " times, "
+                           + "last two 00/01/10/11 : " + Arrays.toString(tail));
+    }
+}
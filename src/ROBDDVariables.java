@@ -0,0 +1,159 @@
+/* =========================================================================== *
+ * File : ROBDDVariables.java                                                  *
+ * =========================================================================== *
+ * Class that maps variable names to the variable indices used in the ROBDD    *
+ * tables (1..n, the top variable being 1) and back. Variables can be added at *
+ * any time. Groups are blocks of adjacent variables that reordering has to    *
+ * keep together. ROBDDs sharing the registry are told of every new variable,  *
+ * whoever declares it.                                                        *
+ * Prime Methods : declare(name), indexOf(name), nameOf(index)                 *
+ *               : group(names), fingerprint()                                 *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+import java.lang.ref.WeakReference;
+
+public class ROBDDVariables{
+
+    // names.get(i-1) is the name of variable i
+    private ArrayList<String> names = new ArrayList<String>();
+    private HashMap<String,Integer> indices = new HashMap<String,Integer>();
+    // groupOf.get(i-1) is the group of variable i, -1 if none
+    private ArrayList<Integer> groupOf = new ArrayList<Integer>();
+    private ArrayList<int[]> groups = new ArrayList<int[]>();
+    // ROBDDs using the registry. Weak, so that the registry does not keep
+    // dropped ROBDDs alive
+    private ArrayList<WeakReference<ROBDD>> managers = 
+        new ArrayList<WeakReference<ROBDD>>();
+
+    // Constructor. An empty registry
+    public ROBDDVariables(){
+    }
+
+    // Constructor. A registry of n variables named x1..xn, as used in the
+    // expressions given to ROBDD.build(booleanExp,rootVar)
+    public ROBDDVariables(int n){
+        for(int i=1;i<=n;i++) declare("x" + i);
+    }
+
+    // Getter-Setter Methods
+    // size : Returns the number of variables
+    public int size(){
+        return names.size();
+    }
+
+    // Public Interface
+    // declare(name) : Returns the index of the named variable, adding it
+    // below all existing variables if it is new
+    public int declare(String name){
+        Integer index = indices.get(name);
+        if(index != null) return index;
+        names.add(name);
+        groupOf.add(-1);
+        indices.put(name,names.size());
+        notifyManagers();
+        return names.size();
+    }
+
+    // attach(bdd) : Registers an ROBDD using the registry, so that it takes
+    // over every variable declared from now on. Collected ROBDDs are
+    // forgotten first
+    void attach(ROBDD bdd){
+        managers.removeIf(reference -> reference.get() == null);
+        managers.add(new WeakReference<ROBDD>(bdd));
+    }
+
+    // indexOf(name) : Returns the index of the named variable, -1 if unknown
+    public int indexOf(String name){
+        Integer index = indices.get(name);
+        return (index == null) ? -1 : index;
+    }
+
+    // nameOf(index) : Returns the name of variable index
+    public String nameOf(int index){
+        return names.get(index - 1);
+    }
+
+    // group(names) : Declares that the named variables form a block that must
+    // stay adjacent. They must currently have consecutive indices and not
+    // belong to another group. Returns the group number.
+    public int group(String... groupNames){
+        int[] block = new int[groupNames.length];
+        for(int k=0;k<block.length;k++){
+            block[k] = indexOf(groupNames[k]);
+            if(block[k] == -1)
+                throw new IllegalArgumentException("Unknown variable " + groupNames[k]);
+        }
+        Arrays.sort(block);
+        for(int k=0;k<block.length;k++){
+            if(k > 0 && block[k] != block[k-1] + 1)
+                throw new IllegalArgumentException("Group is not contiguous");
+            if(groupOf.get(block[k] - 1) != -1)
+                throw new IllegalArgumentException(nameOf(block[k])
+                                                   + " is already grouped");
+        }
+        int group = groups.size();
+        groups.add(block);
+        for(int k=0;k<block.length;k++) groupOf.set(block[k] - 1,group);
+        return group;
+    }
+
+    // groupOf(index) : Returns the group of variable index, -1 if none
+    public int groupOf(int index){
+        return groupOf.get(index - 1);
+    }
+
+    // getGroups : Returns the groups, each as its sorted variable indices
+    public List<int[]> getGroups(){
+        return Collections.unmodifiableList(groups);
+    }
+
+    // fingerprint : Returns a hash of the variable names in index order.
+    // Registries with the same variables in the same order have the same
+    // fingerprint.
+    public long fingerprint(){
+        long hash = 0xCBF29CE484222325L;
+        for(String name : names){
+            for(int k=0;k<name.length();k++)
+                hash = (hash ^ name.charAt(k)) * 0x100000001B3L;
+            // Separator, so that names cannot run into each other
+            hash = (hash ^ 0xFFFF) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // Private Implementation
+    // notifyManagers : Lets every live ROBDD move its terminals below the
+    // new variable, and forgets the collected ones
+    private void notifyManagers(){
+        Iterator<WeakReference<ROBDD>> it = managers.iterator();
+        while(it.hasNext()){
+            ROBDD bdd = it.next().get();
+            if(bdd == null) it.remove();
+            else bdd.syncVariables();
+        }
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ROBDDVariables implementation");
+        ROBDD test = new ROBDD(0);
+        int root = test.build(ROBDDExpression.parse(
+            "(bus.req[0] -> bus.ack[0]) & (bus.req[1] -> bus.ack[1])"));
+        ROBDDVariables vars = test.getVariables();
+        for(int i=1;i<=vars.size();i++)
+            System.out.println(i + " " + vars.nameOf(i));
+        vars.group("bus.req[0]","bus.ack[0]");
+        System.out.println("Group of bus.ack[0] : "
+                           + vars.groupOf(vars.indexOf("bus.ack[0]")));
+        System.out.println("ROBDD nodes : " + test.nodeCount(root));
+
+        // Adding a variable afterwards keeps the existing nodes
+        root = test.apply(ROBDD.AND,root,test.build(ROBDDExpression.parse("enable")));
+        System.out.println("With enable, ROBDD nodes : " + test.nodeCount(root)
+                           + ", variables : " + vars.size());
+    }
+}
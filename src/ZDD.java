@@ -0,0 +1,290 @@
+/* =========================================================================== *
+ * File : ZDD.java                                                             *
+ * =========================================================================== *
+ * Class that represents families of sets as Zero-suppressed Decision Diagrams *
+ * (Minato). The tables are kept in an ROBDDHeapStore as in ROBDD, but the     *
+ * reduction rule of mk removes nodes whose high edge points to 0 instead of   *
+ * nodes whose edges are equal. Node 0 is the empty family, node 1 the family  *
+ * {{}}. All operations work on roots inside the same table.                   *
+ * Prime Methods : union(P,Q), intersect(P,Q), diff(P,Q)                       *
+ *               : change(P,var), onset(P,var), offset(P,var), count(P)        *
+ *               : print()                                                     *
+ * =========================================================================== */
+
+import java.util.*;
+import java.lang.*;
+
+public class ZDD{
+
+    // Operation codes, stored as aux in the computed tables
+    private static final int UNION = 0;
+    private static final int INTERSECT = 1;
+    private static final int DIFF = 2;
+    private static final int CHANGE = 3;
+    private static final int ONSET = 4;
+    private static final int OFFSET = 5;
+
+    // Computed tables of the store : union, intersect and diff keyed by
+    // both operands, change, onset and offset keyed by family and variable
+    private static final int FAMILY_CACHE = 0;
+    private static final int VAR_CACHE = 1;
+
+    // Tables T, H and G
+    private ROBDDHeapStore store;
+    private int vars;
+    private long[] CountTable = new long[0];
+
+    // Constructor. Equivalent to the init(T),init(H) method in Notes
+    // Here n is the number of variables.
+    public ZDD(int n){
+        this(n,ROBDDConfig.DEFAULT);
+    }
+
+    // Constructor. Sizes and grows the tables as given by config
+    public ZDD(int n,ROBDDConfig config){
+        store = new ROBDDHeapStore(config);
+        vars = n;
+
+        // Adding 0 and 1 node. -1 indicates NULL.
+        store.add(n+1,-1,-1);
+        store.add(n+1,-1,-1);
+    }
+
+    // Getter-Setter Methods
+    // getNodeCount : Returns the number of nodes in ZDD
+    public int getNodeCount(){
+        return store.getNodeCount();
+    }
+
+    // getZDDTable : Returns the ZDD table of the ZDD.
+    public int[][] getZDDTable(){
+        return store.getTable();
+    }
+
+    // Public Interface
+    // mk(i,l,h) : Returns the node which is being made.
+    public int mk(int i,int l,int h){
+        // Zero-suppression : a node whose high edge is 0 is removed
+        if(h == 0){
+            return l;
+        }
+        int node = store.lookup(i,l,h);
+        if(node == -1){
+            node = store.add(i,l,h);
+            store.insert(node);
+        }
+        return node;
+    }
+
+    // empty : Returns the empty family
+    public int empty(){
+        return 0;
+    }
+
+    // base : Returns the family containing only the empty set
+    public int base(){
+        return 1;
+    }
+
+    // set(vars) : Returns the family containing only the given set
+    public int set(int... set){
+        int[] sorted = set.clone();
+        Arrays.sort(sorted);
+        int node = 1;
+        for(int k=sorted.length-1;k>=0;k--){
+            if(k < sorted.length-1 && sorted[k] == sorted[k+1]) continue;
+            node = mk(sorted[k],0,node);
+        }
+        return node;
+    }
+
+    // union(P,Q) : Returns the family of sets in P or in Q
+    public int union(int P,int Q){
+        if(P == 0) return Q;
+        if(Q == 0 || P == Q) return P;
+        if(P > Q) return union(Q,P);
+        int cached = store.getCached(FAMILY_CACHE,key(P,Q),UNION);
+        if(cached != -1) return cached;
+        int u;
+        if(store.getVar(P) < store.getVar(Q)){
+            u = mk(store.getVar(P),union(store.getLow(P),Q),store.getHigh(P));
+        }else if(store.getVar(P) > store.getVar(Q)){
+            u = mk(store.getVar(Q),union(P,store.getLow(Q)),store.getHigh(Q));
+        }else{
+            u = mk(store.getVar(P),union(store.getLow(P),store.getLow(Q)),
+                                   union(store.getHigh(P),store.getHigh(Q)));
+        }
+        store.putCached(FAMILY_CACHE,key(P,Q),UNION,u);
+        return u;
+    }
+
+    // intersect(P,Q) : Returns the family of sets in both P and Q
+    public int intersect(int P,int Q){
+        if(P == 0 || Q == 0) return 0;
+        if(P == Q) return P;
+        if(P > Q) return intersect(Q,P);
+        int cached = store.getCached(FAMILY_CACHE,key(P,Q),INTERSECT);
+        if(cached != -1) return cached;
+        int u;
+        if(store.getVar(P) < store.getVar(Q)){
+            u = intersect(store.getLow(P),Q);
+        }else if(store.getVar(P) > store.getVar(Q)){
+            u = intersect(P,store.getLow(Q));
+        }else{
+            u = mk(store.getVar(P),intersect(store.getLow(P),store.getLow(Q)),
+                                   intersect(store.getHigh(P),store.getHigh(Q)));
+        }
+        store.putCached(FAMILY_CACHE,key(P,Q),INTERSECT,u);
+        return u;
+    }
+
+    // diff(P,Q) : Returns the family of sets in P but not in Q
+    public int diff(int P,int Q){
+        if(P == 0 || P == Q) return 0;
+        if(Q == 0) return P;
+        int cached = store.getCached(FAMILY_CACHE,key(P,Q),DIFF);
+        if(cached != -1) return cached;
+        int u;
+        if(store.getVar(P) < store.getVar(Q)){
+            u = mk(store.getVar(P),diff(store.getLow(P),Q),store.getHigh(P));
+        }else if(store.getVar(P) > store.getVar(Q)){
+            u = diff(P,store.getLow(Q));
+        }else{
+            u = mk(store.getVar(P),diff(store.getLow(P),store.getLow(Q)),
+                                   diff(store.getHigh(P),store.getHigh(Q)));
+        }
+        store.putCached(FAMILY_CACHE,key(P,Q),DIFF,u);
+        return u;
+    }
+
+    // change(P,var) : Returns P with var added to the sets not containing it
+    // and removed from the sets containing it
+    public int change(int P,int var){
+        if(store.getVar(P) > var) return mk(var,0,P);
+        if(store.getVar(P) == var) return mk(var,store.getHigh(P),store.getLow(P));
+        int cached = store.getCached(VAR_CACHE,key(P,var),CHANGE);
+        if(cached != -1) return cached;
+        int u = mk(store.getVar(P),change(store.getLow(P),var),
+                                   change(store.getHigh(P),var));
+        store.putCached(VAR_CACHE,key(P,var),CHANGE,u);
+        return u;
+    }
+
+    // onset(P,var) : Returns the sets of P containing var, with var removed
+    public int onset(int P,int var){
+        if(store.getVar(P) > var) return 0;
+        if(store.getVar(P) == var) return store.getHigh(P);
+        int cached = store.getCached(VAR_CACHE,key(P,var),ONSET);
+        if(cached != -1) return cached;
+        int u = mk(store.getVar(P),onset(store.getLow(P),var),
+                                   onset(store.getHigh(P),var));
+        store.putCached(VAR_CACHE,key(P,var),ONSET,u);
+        return u;
+    }
+
+    // offset(P,var) : Returns the sets of P not containing var
+    public int offset(int P,int var){
+        if(store.getVar(P) > var) return P;
+        if(store.getVar(P) == var) return store.getLow(P);
+        int cached = store.getCached(VAR_CACHE,key(P,var),OFFSET);
+        if(cached != -1) return cached;
+        int u = mk(store.getVar(P),offset(store.getLow(P),var),
+                                   offset(store.getHigh(P),var));
+        store.putCached(VAR_CACHE,key(P,var),OFFSET,u);
+        return u;
+    }
+
+    // count(P) : Returns the number of sets in P. Uses DP
+    public long count(int P){
+        int nodeCount = store.getNodeCount();
+        if(CountTable.length < nodeCount){
+            int oldLength = CountTable.length;
+            CountTable = Arrays.copyOf(CountTable,Math.max(nodeCount,2*oldLength));
+            Arrays.fill(CountTable,oldLength,CountTable.length,-1);
+        }
+        return countNodes(P);
+    }
+
+    // sets(P) : Returns the sets of P. Useful for debugging
+    public List<int[]> sets(int P){
+        List<int[]> sets = new ArrayList<int[]>();
+        collect(P,new int[vars],0,sets);
+        return sets;
+    }
+
+    // print : Prints the table T and H. Useful for debugging
+    public void print(){
+        System.out.println("Current State of T Table");
+        for(int i=0;i<store.getNodeCount();i++){
+            System.out.println(i + " " + store.getVar(i)
+                                 + " " + store.getLow(i)
+                                 + " " + store.getHigh(i));
+        }
+        System.out.println("Current State of H Table");
+        for(int i=0;i<store.getUniqueTableSize();i++){
+            int node = store.getUnique(i);
+            if(node != -1) System.out.println(i + " " + node);
+        }
+    }
+
+    // Private Implementation
+    private long countNodes(int P){
+        if(P == 0 || P == 1) return P;
+        if(CountTable[P] != -1) return CountTable[P];
+        CountTable[P] = countNodes(store.getLow(P)) + countNodes(store.getHigh(P));
+        return CountTable[P];
+    }
+
+    private void collect(int P,int[] path,int size,List<int[]> sets){
+        if(P == 0) return;
+        if(P == 1){
+            sets.add(Arrays.copyOf(path,size));
+            return;
+        }
+        collect(store.getLow(P),path,size,sets);
+        path[size] = store.getVar(P);
+        collect(store.getHigh(P),path,size + 1,sets);
+    }
+
+    // Key of an operation on a and b in the computed tables
+    private long key(int a,int b){
+        return ((long) a << 32) | (b & 0xffffffffL);
+    }
+
+    // Test Program
+    public static void main(String[] args){
+
+        System.out.println("Hello. Program to demonstrate" +
+                           "ZDD implementation");
+        ZDD test = new ZDD(4);
+        // P = {{1,2},{2,3},{4}} , Q = {{2,3},{1}}
+        int P = test.union(test.union(test.set(1,2),test.set(2,3)),test.set(4));
+        int Q = test.union(test.set(2,3),test.set(1));
+        System.out.println("P : " + toString(test.sets(P)));
+        System.out.println("Q : " + toString(test.sets(Q)));
+        System.out.println("P union Q : " + toString(test.sets(test.union(P,Q))));
+        System.out.println("P intersect Q : "
+                           + toString(test.sets(test.intersect(P,Q))));
+        System.out.println("P diff Q : " + toString(test.sets(test.diff(P,Q))));
+        System.out.println("change(P,2) : " + toString(test.sets(test.change(P,2))));
+        System.out.println("onset(P,2) : " + toString(test.sets(test.onset(P,2))));
+        System.out.println("offset(P,2) : " + toString(test.sets(test.offset(P,2))));
+        System.out.println("count(P union Q) : " + test.count(test.union(P,Q)));
+        test.print();
+
+        // Same families with a hard limit of 8 nodes
+        ROBDDConfig config = new ROBDDConfig.Builder().maxNodes(8).build();
+        ZDD small = new ZDD(4,config);
+        try{
+            small.union(small.union(small.set(1,2),small.set(2,3)),small.set(4));
+        }catch(ROBDDNodeLimitException e){
+            System.out.println(e.getMessage() + ", nodes : " + small.getNodeCount());
+        }
+    }
+
+    private static String toString(List<int[]> sets){
+        String result = "";
+        for(int[] set : sets) result += " " + Arrays.toString(set);
+        return "{" + result + " }";
+    }
+}